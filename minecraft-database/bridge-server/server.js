@@ -29,6 +29,7 @@ class MinecraftConnection {
     this.socket = null;
     this.pendingRequests = new Map();
     this.connected = false;
+    this.buffer = '';
   }
 
   async connect() {
@@ -53,6 +54,7 @@ class MinecraftConnection {
 
       this.socket.on('close', () => {
         this.connected = false;
+        this.buffer = '';
         console.log('Connection to Minecraft server closed');
         
         // Reject all pending requests
@@ -96,10 +98,13 @@ class MinecraftConnection {
 
   handleResponse(data) {
     try {
-      const lines = data.trim().split('\n');
+      // Large responses (e.g. SCAN with values) can arrive split across chunks
+      this.buffer += data;
+      const lines = this.buffer.split('\n');
+      this.buffer = lines.pop();
       
       for (const line of lines) {
-        if (!line) continue;
+        if (!line.trim()) continue;
         
         const response = JSON.parse(line);
         const pending = this.pendingRequests.get(response.id);
@@ -109,7 +114,9 @@ class MinecraftConnection {
           if (response.success) {
             pending.resolve(response);
           } else {
-            pending.reject(new Error(response.error || 'Unknown error'));
+            const err = new Error(response.error || 'Unknown error');
+            err.response = response;
+            pending.reject(err);
           }
         }
       }
@@ -125,6 +132,60 @@ class MinecraftConnection {
 
 const minecraft = new MinecraftConnection();
 
+/**
+ * Whether a rejected command failed only because the key doesn't exist
+ */
+function isNotFound(err) {
+  return !!(err.response && err.response.status === 'NOT_FOUND');
+}
+
+/**
+ * Page through a key prefix with SCAN, optionally fetching values inline
+ */
+async function scanPrefix(prefix, includeValues) {
+  const results = [];
+  let cursor = null;
+
+  do {
+    const response = await minecraft.sendCommand('SCAN', {
+      prefix,
+      cursor,
+      limit: includeValues ? 100 : 1000,
+      include_values: includeValues
+    });
+
+    if (!response.success || !response.data) break;
+
+    if (includeValues) {
+      results.push(...(response.data.entries || []));
+    } else {
+      results.push(...(response.data.keys || []));
+    }
+    cursor = response.data.has_more ? response.data.cursor : null;
+  } while (cursor);
+
+  return results;
+}
+
+/**
+ * Scan a prefix and decode each inline value as JSON
+ */
+async function scanJson(prefix) {
+  const entries = await scanPrefix(prefix, true);
+  const values = [];
+
+  for (const entry of entries) {
+    if (!entry.value) continue;
+    try {
+      values.push(JSON.parse(Buffer.from(entry.value, 'base64').toString('utf8')));
+    } catch (err) {
+      console.error(`Error decoding ${entry.key}:`, err.message);
+    }
+  }
+
+  return values;
+}
+
 // API Endpoints
 
 // Health check
@@ -186,6 +247,9 @@ app.get('/mcdb/read/:key', async (req, res) => {
     
     res.json(response);
   } catch (error) {
+    if (isNotFound(error)) {
+      return res.status(404).json({ error: error.message });
+    }
     console.error('Read error:', error.message);
     res.status(500).json({ error: error.message });
   }
@@ -199,6 +263,9 @@ app.delete('/mcdb/delete/:key', async (req, res) => {
     const response = await minecraft.sendCommand('DELETE', { key });
     res.json(response);
   } catch (error) {
+    if (isNotFound(error)) {
+      return res.status(404).json({ error: error.message });
+    }
     console.error('Delete error:', error.message);
     res.status(500).json({ error: error.message });
   }
@@ -369,33 +436,13 @@ app.post('/mcdb/lectures/sync', async (req, res) => {
 // List all reels from Minecraft
 app.get('/mcdb/reels/list', async (req, res) => {
   try {
-    const response = await minecraft.sendCommand('LIST', {});
+    const reels = await scanJson('reel:');
     
-    if (response.success && response.data && response.data.keys) {
-      const reelKeys = response.data.keys.filter(key => key.startsWith('reel:'));
-      
-      // Fetch metadata for each reel
-      const reels = [];
-      for (const key of reelKeys) {
-        try {
-          const data = await minecraft.sendCommand('READ', { key });
-          if (data.success && data.data.value) {
-            const metadata = JSON.parse(Buffer.from(data.data.value, 'base64').toString('utf8'));
-            reels.push(metadata);
-          }
-        } catch (err) {
-          console.error(`Error reading reel ${key}:`, err.message);
-        }
-      }
-      
-      res.json({
-        success: true,
-        count: reels.length,
-        reels
-      });
-    } else {
-      res.json({ success: true, count: 0, reels: [] });
-    }
+    res.json({
+      success: true,
+      count: reels.length,
+      reels
+    });
   } catch (error) {
     console.error('Reel list error:', error.message);
     res.status(500).json({ error: error.message });
@@ -405,33 +452,13 @@ app.get('/mcdb/reels/list', async (req, res) => {
 // List all lectures from Minecraft
 app.get('/mcdb/lectures/list', async (req, res) => {
   try {
-    const response = await minecraft.sendCommand('LIST', {});
+    const lectures = await scanJson('lecture:');
     
-    if (response.success && response.data && response.data.keys) {
-      const lectureKeys = response.data.keys.filter(key => key.startsWith('lecture:'));
-      
-      // Fetch metadata for each lecture
-      const lectures = [];
-      for (const key of lectureKeys) {
-        try {
-          const data = await minecraft.sendCommand('READ', { key });
-          if (data.success && data.data.value) {
-            const metadata = JSON.parse(Buffer.from(data.data.value, 'base64').toString('utf8'));
-            lectures.push(metadata);
-          }
-        } catch (err) {
-          console.error(`Error reading lecture ${key}:`, err.message);
-        }
-      }
-      
-      res.json({
-        success: true,
-        count: lectures.length,
-        lectures
-      });
-    } else {
-      res.json({ success: true, count: 0, lectures: [] });
-    }
+    res.json({
+      success: true,
+      count: lectures.length,
+      lectures
+    });
   } catch (error) {
     console.error('Lecture list error:', error.message);
     res.status(500).json({ error: error.message });
@@ -452,6 +479,9 @@ app.get('/mcdb/reels/:id', async (req, res) => {
     
     res.json(response);
   } catch (error) {
+    if (isNotFound(error)) {
+      return res.status(404).json({ error: error.message });
+    }
     console.error('Get reel error:', error.message);
     res.status(500).json({ error: error.message });
   }
@@ -471,6 +501,9 @@ app.get('/mcdb/lectures/:id', async (req, res) => {
     
     res.json(response);
   } catch (error) {
+    if (isNotFound(error)) {
+      return res.status(404).json({ error: error.message });
+    }
     console.error('Get lecture error:', error.message);
     res.status(500).json({ error: error.message });
   }
@@ -481,6 +514,19 @@ app.get('/mcdb/lectures/:id', async (req, res) => {
 // Ground-level compact layout - notes at top
 // ============================================
 
+// Last version and creation date seen per note, so a repeat save can CAS without a READ first
+const NOTE_VERSION_CACHE_SIZE = 10000;
+const noteVersions = new Map();
+
+function rememberNoteVersion(noteKey, version, created) {
+  noteVersions.delete(noteKey);
+  noteVersions.set(noteKey, { version, created });
+  if (noteVersions.size > NOTE_VERSION_CACHE_SIZE) {
+    // Maps iterate in insertion order - drop the least recently saved note
+    noteVersions.delete(noteVersions.keys().next().value);
+  }
+}
+
 // Save note for a lecture
 app.post('/mcdb/notes/save', async (req, res) => {
   try {
@@ -508,22 +554,52 @@ app.post('/mcdb/notes/save', async (req, res) => {
       created: new Date().toISOString() // Will be overwritten if note exists
     };
     
-    // Try to read existing note to preserve creation date
-    try {
-      const existing = await minecraft.sendCommand('READ', { key: noteKey });
-      if (existing.success && existing.data && existing.data.value) {
-        const existingNote = JSON.parse(Buffer.from(existing.data.value, 'base64').toString('utf8'));
-        if (existingNote.created) {
-          noteData.created = existingNote.created;
+    // Preserve the creation date with an optimistic versioned write: create with
+    // WRITE_IF_ABSENT, otherwise CAS against a known version. A note this bridge saved or read
+    // before is CAS'd directly in one round trip; only a conflict costs a READ.
+    let response = null;
+    let known = noteVersions.get(noteKey);
+    for (let attempt = 0; attempt < 3 && !response; attempt++) {
+      let version = 0;
+      if (known) {
+        version = known.version;
+        noteData.created = known.created;
+        known = null;
+      } else {
+        try {
+          const existing = await minecraft.sendCommand('READ', { key: noteKey });
+          if (existing.success && existing.data && existing.data.value) {
+            version = existing.data.version || 0;
+            const existingNote = JSON.parse(Buffer.from(existing.data.value, 'base64').toString('utf8'));
+            if (existingNote.created) {
+              noteData.created = existingNote.created;
+            }
+          }
+        } catch (err) {
+          // Note doesn't exist yet, that's fine
+        }
+      }
+      
+      const encodedValue = Buffer.from(JSON.stringify(noteData)).toString('base64');
+      try {
+        response = version > 0
+          ? await minecraft.sendCommand('CAS', { key: noteKey, value: encodedValue, version })
+          : await minecraft.sendCommand('WRITE_IF_ABSENT', { key: noteKey, value: encodedValue });
+      } catch (err) {
+        // Someone else saved in between - re-read and retry
+        if (!(err.response && err.response.data && err.response.data.conflict)) {
+          throw err;
         }
       }
-    } catch (err) {
-      // Note doesn't exist yet, that's fine
     }
     
-    // Encode and save
-    const encodedValue = Buffer.from(JSON.stringify(noteData)).toString('base64');
-    const response = await minecraft.sendCommand('WRITE', { key: noteKey, value: encodedValue });
+    if (!response) {
+      noteVersions.delete(noteKey);
+      return res.status(409).json({ error: 'Note was modified concurrently, please retry' });
+    }
+    if (response.data && response.data.version) {
+      rememberNoteVersion(noteKey, response.data.version, noteData.created);
+    }
     
     res.json({
       success: response.success,
@@ -551,6 +627,9 @@ app.get('/mcdb/notes/get/:lectureId', async (req, res) => {
     
     if (response.success && response.data && response.data.value) {
       const note = JSON.parse(Buffer.from(response.data.value, 'base64').toString('utf8'));
+      if (response.data.version && note.created) {
+        rememberNoteVersion(noteKey, response.data.version, note.created);
+      }
       res.json({
         success: true,
         note: note
@@ -564,6 +643,10 @@ app.get('/mcdb/notes/get/:lectureId', async (req, res) => {
     }
     
   } catch (error) {
+    if (isNotFound(error)) {
+      // No note saved yet
+      return res.json({ success: true, note: null });
+    }
     console.error('Get note error:', error.message);
     res.status(500).json({ error: error.message });
   }
@@ -573,36 +656,16 @@ app.get('/mcdb/notes/get/:lectureId', async (req, res) => {
 app.get('/mcdb/notes/list', async (req, res) => {
   try {
     const userId = req.query.userId || 'default';
-    const response = await minecraft.sendCommand('LIST', {});
+    const notes = await scanJson(`note:${userId}_`);
     
-    if (response.success && response.data && response.data.keys) {
-      const noteKeys = response.data.keys.filter(key => key.startsWith(`note:${userId}_`));
-      
-      // Fetch content for each note
-      const notes = [];
-      for (const key of noteKeys) {
-        try {
-          const data = await minecraft.sendCommand('READ', { key });
-          if (data.success && data.data.value) {
-            const note = JSON.parse(Buffer.from(data.data.value, 'base64').toString('utf8'));
-            notes.push(note);
-          }
-        } catch (err) {
-          console.error(`Error reading note ${key}:`, err.message);
-        }
-      }
-      
-      // Sort by last modified (newest first)
-      notes.sort((a, b) => new Date(b.lastModified) - new Date(a.lastModified));
-      
-      res.json({
-        success: true,
-        count: notes.length,
-        notes: notes
-      });
-    } else {
-      res.json({ success: true, count: 0, notes: [] });
-    }
+    // Sort by last modified (newest first)
+    notes.sort((a, b) => new Date(b.lastModified) - new Date(a.lastModified));
+    
+    res.json({
+      success: true,
+      count: notes.length,
+      notes: notes
+    });
   } catch (error) {
     console.error('List notes error:', error.message);
     res.status(500).json({ error: error.message });
@@ -616,6 +679,7 @@ app.delete('/mcdb/notes/delete/:lectureId', async (req, res) => {
     const userId = req.query.userId || 'default';
     
     const noteKey = `note:${userId}_${lectureId}`;
+    noteVersions.delete(noteKey);
     const response = await minecraft.sendCommand('DELETE', { key: noteKey });
     
     res.json(response);
@@ -658,15 +722,15 @@ async function fetchR2Files(folder) {
 }
 
 /**
- * Get all keys from Minecraft database
+ * Get all reel and lecture keys from Minecraft database
  */
 async function getMinecraftKeys() {
   try {
-    const response = await minecraft.sendCommand('LIST', {});
-    if (response.success && response.data && response.data.keys) {
-      return new Set(response.data.keys);
-    }
-    return new Set();
+    const keys = [
+      ...await scanPrefix('reel:', false),
+      ...await scanPrefix('lecture:', false)
+    ];
+    return new Set(keys);
   } catch (error) {
     console.error('Error getting Minecraft keys:', error.message);
     return new Set();
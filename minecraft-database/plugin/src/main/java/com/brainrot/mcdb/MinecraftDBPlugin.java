@@ -3,14 +3,18 @@ package com.brainrot.mcdb;
 import com.brainrot.mcdb.commands.DatabaseCommands;
 import com.brainrot.mcdb.database.BlockDatabase;
 import com.brainrot.mcdb.database.ChunkManager;
+import com.brainrot.mcdb.database.Compactor;
 import com.brainrot.mcdb.socket.SocketServer;
 import com.brainrot.mcdb.utils.ConfigManager;
 import com.brainrot.mcdb.utils.PermissionManager;
+import com.brainrot.mcdb.utils.TaskScheduler;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.List;
+
 public class MinecraftDBPlugin extends JavaPlugin {
     
     private static MinecraftDBPlugin instance;
@@ -20,6 +24,7 @@ public class MinecraftDBPlugin extends JavaPlugin {
     private SocketServer socketServer;
     private PermissionManager permissionManager;
     private DatabaseCommands databaseCommands;
+    private TaskScheduler taskScheduler;
     
     @Override
     public void onEnable() {
@@ -29,16 +34,22 @@ public class MinecraftDBPlugin extends JavaPlugin {
         saveDefaultConfig();
         
         // Initialize managers
-        configManager = new ConfigManager(this);
         permissionManager = new PermissionManager(getDataFolder());
+        taskScheduler = new TaskScheduler(this);
         
         getLogger().info("Initializing Minecraft Database Plugin...");
+        if (taskScheduler.isFolia()) {
+            getLogger().info("Folia detected, block work runs on the owning region threads");
+        }
         
         try {
+            // Load and validate settings
+            configManager = new ConfigManager(this);
+            
             // Initialize chunk manager
             chunkManager = new ChunkManager(this);
             chunkManager.initialize();
-            getLogger().info("Chunk manager initialized");
+            getLogger().info("Chunk manager initialized, loading chunks in the background");
             
             // Initialize block database
             blockDatabase = new BlockDatabase(this, chunkManager);
@@ -118,9 +129,15 @@ public class MinecraftDBPlugin extends JavaPlugin {
         
         switch (args[0].toLowerCase()) {
             case "reload":
-                reloadConfig();
-                configManager = new ConfigManager(this);
-                sender.sendMessage("§aConfiguration reloaded!");
+                try {
+                    List<String> restartPending = configManager.reload();
+                    sender.sendMessage("§aConfiguration reloaded!");
+                    if (!restartPending.isEmpty()) {
+                        sender.sendMessage("§eThese settings apply after a restart: §f" + String.join(", ", restartPending));
+                    }
+                } catch (IllegalArgumentException e) {
+                    sender.sendMessage("§cConfiguration not reloaded: " + e.getMessage());
+                }
                 return true;
                 
             case "status":
@@ -143,6 +160,10 @@ public class MinecraftDBPlugin extends JavaPlugin {
                 sendInfo(sender);
                 return true;
                 
+            case "compact":
+                compactDatabase(sender);
+                return true;
+                
             default:
                 sendHelp(sender);
                 return true;
@@ -155,6 +176,7 @@ public class MinecraftDBPlugin extends JavaPlugin {
         sender.sendMessage("§e/mcdb status §7- Show server status");
         sender.sendMessage("§e/mcdb info §7- Show database info");
         sender.sendMessage("§e/mcdb test §7- Run database test");
+        sender.sendMessage("§e/mcdb compact §7- Defragment the database area");
         sender.sendMessage("§e/mcdb clear §7- Clear all data (console only)");
     }
     
@@ -163,16 +185,22 @@ public class MinecraftDBPlugin extends JavaPlugin {
         sender.sendMessage("§eSocket Server: " + (socketServer != null && socketServer.isRunning() ? "§aRunning" : "§cStopped"));
         sender.sendMessage("§ePort: §f" + configManager.getSocketPort());
         sender.sendMessage("§eConnections: §f" + (socketServer != null ? socketServer.getConnectionCount() : 0));
-        sender.sendMessage("§eChunks Loaded: §f" + chunkManager.getLoadedChunkCount());
+        sender.sendMessage("§eChunks Loaded: §f" + chunkManager.getLoadedChunkCount() + "/" + chunkManager.getTotalChunkCount()
+            + (chunkManager.isReady() ? " §7(warmup " + chunkManager.getWarmupMillis() + "ms)" : " §e(warming up)"));
         sender.sendMessage("§eEntries: §f" + blockDatabase.getEntryCount());
         sender.sendMessage("§eCache Size: §f" + blockDatabase.getCacheSize());
+        sender.sendMessage("§eCache Hit Rate: §f" + String.format("%.1f", blockDatabase.getCacheStats().getHitRate()) + "%");
+        Compactor compactor = blockDatabase.getCompactor();
+        sender.sendMessage("§eCompaction: §f" + (compactor.isRunning()
+            ? compactor.getState() + " " + compactor.getProgress() + "%"
+            : "idle (" + compactor.getEntriesMoved() + " moved, " + compactor.getReclaimedBlocks() + " blocks reclaimed)"));
     }
     
     private void sendInfo(CommandSender sender) {
         sender.sendMessage("§6§l=== Database Information ===");
         sender.sendMessage("§eWorld: §f" + configManager.getWorldName());
         sender.sendMessage("§eChunk Area: §f" + configManager.getChunkStartX() + "," + configManager.getChunkStartZ() +
-                " to " + configManager.getChunkEndX() + "," + configManager.getChunkEndZ());
+                " to " + configManager.getChunkEndX() + "," + chunkManager.getLayout().getMaxChunkZ());
         sender.sendMessage("§eY Range: §f" + configManager.getMinY() + " - " + configManager.getMaxY());
         sender.sendMessage("§eEncoding: §f" + configManager.getEncoding());
         sender.sendMessage("§eCapacity: §f~" + blockDatabase.getEstimatedCapacity() + " entries");
@@ -182,15 +210,32 @@ public class MinecraftDBPlugin extends JavaPlugin {
     private void clearDatabase(CommandSender sender) {
         sender.sendMessage("§eClearing database...");
         int cleared = blockDatabase.clearAll();
-        sender.sendMessage("§aCleared " + cleared + " entries from database!");
+        sender.sendMessage("§aCleared " + cleared + " entries from database! Blocks are wiped in the background.");
+    }
+    
+    private void compactDatabase(CommandSender sender) {
+        Compactor compactor = blockDatabase.getCompactor();
+        if (compactor.start("command by " + sender.getName())) {
+            sender.sendMessage("§aCompaction started, progress is shown in /mcdb status");
+        } else {
+            sender.sendMessage("§eCompaction already running (" + compactor.getState() + ", " + compactor.getProgress() + "%)");
+        }
     }
     
     private void testDatabase(CommandSender sender) {
         sender.sendMessage("§eRunning database test...");
         
+        // Run on the thread owning the test entry's chunks
+        String testKey = "test_" + System.currentTimeMillis();
+        blockDatabase.supplyForKey(testKey, () -> {
+            runTest(sender, testKey);
+            return null;
+        });
+    }
+    
+    private void runTest(CommandSender sender, String testKey) {
         try {
             // Write test
-            String testKey = "test_" + System.currentTimeMillis();
             String testValue = "Hello from MCDB!";
             
             long startWrite = System.currentTimeMillis();
@@ -204,8 +249,9 @@ public class MinecraftDBPlugin extends JavaPlugin {
             byte[] data = blockDatabase.read(testKey);
             long readTime = System.currentTimeMillis() - startRead;
             
-            String retrieved = new String(data);
-            if (retrieved.equals(testValue)) {
+            if (data == null) {
+                sender.sendMessage("§cRead test failed: key not found");
+            } else if (new String(data).equals(testValue)) {
                 sender.sendMessage("§aRead test passed (" + readTime + "ms)");
             } else {
                 sender.sendMessage("§cRead test failed: data mismatch");
@@ -227,7 +273,7 @@ public class MinecraftDBPlugin extends JavaPlugin {
     
     private void logDatabaseStats() {
         getLogger().info("Database Statistics:");
-        getLogger().info("  Chunks: " + chunkManager.getLoadedChunkCount());
+        getLogger().info("  Chunks: " + chunkManager.getTotalChunkCount());
         getLogger().info("  Capacity: ~" + blockDatabase.getEstimatedCapacity() + " entries");
         getLogger().info("  Current entries: " + blockDatabase.getEntryCount());
     }
@@ -255,5 +301,9 @@ public class MinecraftDBPlugin extends JavaPlugin {
     public PermissionManager getPermissionManager() {
         return permissionManager;
     }
+    
+    public TaskScheduler getTaskScheduler() {
+        return taskScheduler;
+    }
 }
 
@@ -1,6 +1,8 @@
 package com.brainrot.mcdb.commands;
 
 import com.brainrot.mcdb.MinecraftDBPlugin;
+import com.brainrot.mcdb.database.StorageRegion;
+import com.brainrot.mcdb.models.Namespace;
 import com.brainrot.mcdb.utils.PermissionManager;
 import org.bukkit.ChatColor;
 import org.bukkit.GameMode;
@@ -22,14 +24,6 @@ public class DatabaseCommands implements CommandExecutor, TabCompleter {
     private final MinecraftDBPlugin plugin;
     private final PermissionManager permissionManager;
     
-    // Database regions
-    private static final int REELS_Y_MIN = 5;
-    private static final int REELS_Y_MAX = 100;
-    private static final int LECTURES_Y_MIN = 105;
-    private static final int LECTURES_Y_MAX = 200;
-    private static final int NOTES_Y_MIN = 201;
-    private static final int NOTES_Y_MAX = 250;
-    
     public DatabaseCommands(MinecraftDBPlugin plugin, PermissionManager permissionManager) {
         this.plugin = plugin;
         this.permissionManager = permissionManager;
@@ -159,7 +153,7 @@ public class DatabaseCommands implements CommandExecutor, TabCompleter {
         }
         
         if (args.length < 1) {
-            player.sendMessage(ChatColor.YELLOW + "Usage: /dbview <reels|lectures|notes|all>");
+            player.sendMessage(ChatColor.YELLOW + "Usage: /dbview <" + String.join("|", getRegionNames()) + ">");
             return true;
         }
         
@@ -167,36 +161,23 @@ public class DatabaseCommands implements CommandExecutor, TabCompleter {
         int targetY;
         String regionName;
         
-        switch (region) {
-            case "reels":
-                targetY = (REELS_Y_MIN + REELS_Y_MAX) / 2;
-                regionName = "Reels Database (Y: 5-100)";
-                break;
-                
-            case "lectures":
-                targetY = (LECTURES_Y_MIN + LECTURES_Y_MAX) / 2;
-                regionName = "Lectures Database (Y: 105-200)";
-                break;
-                
-            case "notes":
-                targetY = (NOTES_Y_MIN + NOTES_Y_MAX) / 2;
-                regionName = "Notes Database (Y: 201-250)";
-                break;
-                
-            case "all":
-                targetY = 125; // Middle of all regions
-                regionName = "All Database Regions";
-                break;
-                
-            default:
+        if (region.equals("all")) {
+            targetY = getAreaCenterY(); // Middle of all regions
+            regionName = "All Database Regions";
+        } else {
+            Namespace namespace = findNamespace(region);
+            if (namespace == null) {
                 player.sendMessage(ChatColor.RED + "Unknown region: " + region);
-                player.sendMessage(ChatColor.YELLOW + "Available regions: reels, lectures, notes, all");
+                player.sendMessage(ChatColor.YELLOW + "Available regions: " + String.join(", ", getRegionNames()));
                 return true;
+            }
+            targetY = (namespace.getMinY() + namespace.getMaxY()) / 2;
+            regionName = "Namespace " + namespace;
         }
         
         // Teleport to database region
         Location dbLocation = new Location(player.getWorld(), 0, targetY, 0);
-        player.teleport(dbLocation);
+        player.teleportAsync(dbLocation);
         
         // Set spectator mode
         player.setGameMode(GameMode.SPECTATOR);
@@ -218,7 +199,7 @@ public class DatabaseCommands implements CommandExecutor, TabCompleter {
         }
         
         if (args.length < 1) {
-            player.sendMessage(ChatColor.YELLOW + "Usage: /dbteleport <reels|lectures|notes|all> [x] [z]");
+            player.sendMessage(ChatColor.YELLOW + "Usage: /dbteleport <" + String.join("|", getRegionNames()) + "> [x] [z]");
             return true;
         }
         
@@ -226,30 +207,17 @@ public class DatabaseCommands implements CommandExecutor, TabCompleter {
         int targetY;
         String regionName;
         
-        switch (region) {
-            case "reels":
-                targetY = (REELS_Y_MIN + REELS_Y_MAX) / 2;
-                regionName = "Reels Region";
-                break;
-                
-            case "lectures":
-                targetY = (LECTURES_Y_MIN + LECTURES_Y_MAX) / 2;
-                regionName = "Lectures Region";
-                break;
-                
-            case "notes":
-                targetY = (NOTES_Y_MIN + NOTES_Y_MAX) / 2;
-                regionName = "Notes Region";
-                break;
-                
-            case "all":
-                targetY = 125;
-                regionName = "Database Center";
-                break;
-                
-            default:
+        if (region.equals("all")) {
+            targetY = getAreaCenterY();
+            regionName = "Database Center";
+        } else {
+            Namespace namespace = findNamespace(region);
+            if (namespace == null) {
                 player.sendMessage(ChatColor.RED + "Unknown region: " + region);
                 return true;
+            }
+            targetY = (namespace.getMinY() + namespace.getMaxY()) / 2;
+            regionName = namespace.getName() + " region";
         }
         
         // Parse coordinates if provided
@@ -267,7 +235,7 @@ public class DatabaseCommands implements CommandExecutor, TabCompleter {
         }
         
         Location dbLocation = new Location(player.getWorld(), x, targetY, z);
-        player.teleport(dbLocation);
+        player.teleportAsync(dbLocation);
         
         player.sendMessage(ChatColor.GREEN + "✓ Teleported to " + regionName);
         player.sendMessage(ChatColor.GRAY + "Coordinates: " + (int)x + ", " + targetY + ", " + (int)z);
@@ -301,12 +269,40 @@ public class DatabaseCommands implements CommandExecutor, TabCompleter {
             case "dbview":
             case "dbteleport":
                 if (args.length == 1) {
-                    completions.addAll(Arrays.asList("reels", "lectures", "notes", "all"));
+                    completions.addAll(getRegionNames());
                 }
                 break;
         }
         
         return completions;
     }
+    
+    /**
+     * Configured namespace by name, null if there is none
+     */
+    private Namespace findNamespace(String name) {
+        for (StorageRegion region : plugin.getBlockDatabase().getRegions()) {
+            if (region.getName().equalsIgnoreCase(name)) {
+                return region.getNamespace();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Namespace names plus "all"
+     */
+    private List<String> getRegionNames() {
+        List<String> names = new ArrayList<>();
+        for (StorageRegion region : plugin.getBlockDatabase().getRegions()) {
+            names.add(region.getName());
+        }
+        names.add("all");
+        return names;
+    }
+    
+    private int getAreaCenterY() {
+        return (plugin.getConfigManager().getMinY() + plugin.getConfigManager().getMaxY()) / 2;
+    }
 }
 
@@ -0,0 +1,243 @@
+package com.brainrot.mcdb.database;
+
+import com.brainrot.mcdb.models.BlockPosition;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+/**
+ * Maps the database area onto a linear block offset space.
+ *
+ * Offsets are ordered chunk column by column (x fastest, then z), and within a column section
+ * by section from the bottom up; inside a section x varies fastest, then z, then y. Every run
+ * of consecutive offsets therefore stays inside one chunk section for as long as possible, so
+ * traversal only resolves one chunk per section run and never allocates per block.
+ *
+ * The layout is immutable and computed once from the configured bounds.
+ */
+public class AreaLayout {
+    
+    /**
+     * Callback for block traversal, return false to stop early
+     */
+    @FunctionalInterface
+    public interface BlockVisitor {
+        boolean visit(Block block, int index);
+    }
+    
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int chunksX;
+    private final int chunksZ;
+    private final int minY;
+    private final int maxY;
+    
+    private final BlockPosition start;
+    private final BlockPosition end;
+    
+    // Blocks per chunk column, and per-section layout within a column (bottom section first)
+    private final int columnSize;
+    private final int[] sectionMinY;
+    private final int[] sectionStart;
+    private final int[] sectionSize;
+    private final int firstSection;
+    
+    public AreaLayout(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, int minY, int maxY) {
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.chunksX = maxChunkX - minChunkX + 1;
+        this.chunksZ = maxChunkZ - minChunkZ + 1;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.start = new BlockPosition(minChunkX * 16, minY, minChunkZ * 16);
+        this.end = new BlockPosition(maxChunkX * 16 + 15, maxY, maxChunkZ * 16 + 15);
+        
+        this.firstSection = minY >> 4;
+        int sections = (maxY >> 4) - firstSection + 1;
+        this.sectionMinY = new int[sections];
+        this.sectionStart = new int[sections];
+        this.sectionSize = new int[sections];
+        
+        int offset = 0;
+        for (int s = 0; s < sections; s++) {
+            int low = Math.max(minY, (firstSection + s) << 4);
+            int high = Math.min(maxY, ((firstSection + s) << 4) + 15);
+            sectionMinY[s] = low;
+            sectionStart[s] = offset;
+            sectionSize[s] = (high - low + 1) * 256;
+            offset += sectionSize[s];
+        }
+        this.columnSize = offset;
+    }
+    
+    /**
+     * Layout over the same chunks restricted to a y band, e.g. for one namespace's region
+     */
+    public AreaLayout slice(int bandMinY, int bandMaxY) {
+        return new AreaLayout(minChunkX, minChunkZ, minChunkX + chunksX - 1, minChunkZ + chunksZ - 1,
+            bandMinY, bandMaxY);
+    }
+    
+    /**
+     * The area with chunk rows appended along z. Columns are numbered x first, so existing
+     * columns and block offsets keep their values and the new rows follow them.
+     */
+    public AreaLayout extend(int extraRows) {
+        return new AreaLayout(minChunkX, minChunkZ, minChunkX + chunksX - 1, getMaxChunkZ() + extraRows, minY, maxY);
+    }
+    
+    public int getMaxChunkZ() {
+        return minChunkZ + chunksZ - 1;
+    }
+    
+    public BlockPosition getStart() {
+        return start;
+    }
+    
+    public BlockPosition getEnd() {
+        return end;
+    }
+    
+    public int getTotalBlocks() {
+        return columnSize * chunksX * chunksZ;
+    }
+    
+    /**
+     * Number of chunk sections (or partial sections at the area's y bounds) in the area
+     */
+    public int getSectionCount() {
+        return sectionStart.length * chunksX * chunksZ;
+    }
+    
+    /**
+     * Offset of the first block of a section
+     */
+    public long getSectionStart(int section) {
+        int perColumn = sectionStart.length;
+        return (long) (section / perColumn) * columnSize + sectionStart[section % perColumn];
+    }
+    
+    public int getSectionsPerColumn() {
+        return sectionStart.length;
+    }
+    
+    /**
+     * Lowest y of a section; it spans getSectionLength / 256 layers
+     */
+    public int getSectionMinY(int section) {
+        return sectionMinY[section % sectionStart.length];
+    }
+    
+    public int getSectionLength(int section) {
+        return sectionSize[section % sectionStart.length];
+    }
+    
+    public int getSectionIndex(long offset) {
+        int column = (int) (offset / columnSize);
+        return column * sectionStart.length + sectionAt((int) (offset % columnSize));
+    }
+    
+    /**
+     * Blocks per chunk column; runs within one column touch a single chunk
+     */
+    public int getColumnSize() {
+        return columnSize;
+    }
+    
+    public int getColumnCount() {
+        return chunksX * chunksZ;
+    }
+    
+    /**
+     * Chunk column an offset falls in
+     */
+    public int getColumnIndex(long offset) {
+        return (int) (offset / columnSize);
+    }
+    
+    public int getColumnChunkX(int column) {
+        return minChunkX + column % chunksX;
+    }
+    
+    public int getColumnChunkZ(int column) {
+        return minChunkZ + column / chunksX;
+    }
+    
+    public boolean contains(int x, int y, int z) {
+        int chunkX = (x >> 4) - minChunkX;
+        int chunkZ = (z >> 4) - minChunkZ;
+        return chunkX >= 0 && chunkX < chunksX && chunkZ >= 0 && chunkZ < chunksZ
+            && y >= minY && y <= maxY;
+    }
+    
+    public boolean contains(BlockPosition position) {
+        return contains(position.getX(), position.getY(), position.getZ());
+    }
+    
+    /**
+     * Whether a chunk column is part of the area
+     */
+    public boolean containsChunk(int chunkX, int chunkZ) {
+        return chunkX >= minChunkX && chunkX < minChunkX + chunksX
+            && chunkZ >= minChunkZ && chunkZ < minChunkZ + chunksZ;
+    }
+    
+    public long toOffset(BlockPosition position) {
+        return toOffset(position.getX(), position.getY(), position.getZ());
+    }
+    
+    public long toOffset(int x, int y, int z) {
+        int column = ((z >> 4) - minChunkZ) * chunksX + ((x >> 4) - minChunkX);
+        int section = (y >> 4) - firstSection;
+        int local = ((y - sectionMinY[section]) << 8) | ((z & 15) << 4) | (x & 15);
+        return (long) column * columnSize + sectionStart[section] + local;
+    }
+    
+    public BlockPosition toPosition(long offset) {
+        int column = (int) (offset / columnSize);
+        int inColumn = (int) (offset % columnSize);
+        int section = sectionAt(inColumn);
+        int local = inColumn - sectionStart[section];
+        
+        int x = ((minChunkX + column % chunksX) << 4) | (local & 15);
+        int z = ((minChunkZ + column / chunksX) << 4) | ((local >> 4) & 15);
+        int y = sectionMinY[section] + (local >> 8);
+        return new BlockPosition(x, y, z);
+    }
+    
+    /**
+     * Visit count blocks starting at the offset in layout order. The chunk is resolved once per
+     * section run. Returns false if the visitor stopped early or the range leaves the area.
+     */
+    public boolean forEachBlock(World world, long offset, int count, BlockVisitor visitor) {
+        if (offset < 0 || offset + count > getTotalBlocks()) {
+            return false;
+        }
+        
+        int index = 0;
+        while (index < count) {
+            long position = offset + index;
+            int column = (int) (position / columnSize);
+            int inColumn = (int) (position % columnSize);
+            int section = sectionAt(inColumn);
+            int local = inColumn - sectionStart[section];
+            int run = Math.min(count - index, sectionSize[section] - local);
+            
+            Chunk chunk = world.getChunkAt(minChunkX + column % chunksX, minChunkZ + column / chunksX);
+            int baseY = sectionMinY[section];
+            for (int runEnd = local + run; local < runEnd; local++, index++) {
+                Block block = chunk.getBlock(local & 15, baseY + (local >> 8), (local >> 4) & 15);
+                if (!visitor.visit(block, index)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    private int sectionAt(int inColumn) {
+        // All sections but the first and last are full, so this is a direct computation
+        int section = inColumn < sectionSize[0] ? 0 : 1 + (inColumn - sectionSize[0]) / 4096;
+        return Math.min(section, sectionStart.length - 1);
+    }
+}
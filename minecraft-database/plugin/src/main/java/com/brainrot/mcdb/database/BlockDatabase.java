@@ -2,492 +2,1709 @@ package com.brainrot.mcdb.database;
 
 import com.brainrot.mcdb.MinecraftDBPlugin;
 import com.brainrot.mcdb.models.BlockPosition;
+import com.brainrot.mcdb.models.CacheStats;
+import com.brainrot.mcdb.models.ChangeEvent;
 import com.brainrot.mcdb.models.DataAddress;
 import com.brainrot.mcdb.models.DataEntry;
+import com.brainrot.mcdb.models.EncodedValue;
+import com.brainrot.mcdb.models.Extent;
+import com.brainrot.mcdb.models.Namespace;
+import com.brainrot.mcdb.models.ScanPage;
 import com.brainrot.mcdb.utils.ConfigManager;
-import org.bukkit.Bukkit;
+import com.brainrot.mcdb.utils.TaskScheduler;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
 
 public class BlockDatabase {
     
     private final MinecraftDBPlugin plugin;
     private final ConfigManager config;
     private final ChunkManager chunkManager;
+    
+    // Whole storage volume; each region is a y band of it. Replaced when the area grows.
+    private volatile AreaLayout area;
     private final DataEncoder encoder;
     
-    // In-memory index: key -> DataAddress
-    private final Map<String, DataAddress> index;
+    // Maximum number of keys returned by a single scan page
+    public static final int MAX_SCAN_LIMIT = 1000;
+    
+    // Fingerprint pages are much smaller per key, so a whole prefix usually fits in one
+    public static final int MAX_FINGERPRINT_LIMIT = 10000;
+    
+    // Placement retries when blocks the database didn't place are found in a chosen run
+    private static final int MAX_PLACEMENT_ATTEMPTS = 8;
+    
+    // Lock stripes for per-key changes
+    private static final int KEY_LOCK_STRIPES = 64;
+    
+    // Namespace regions, longest prefix first. Each has its own allocator, index shard, key
+    // filter and cache; keys are routed to the first region whose prefix they start with.
+    private final List<StorageRegion> regions;
+    
+    // Optional value cache outside the Java heap, replacing the region caches (null when disabled)
+    private final OffHeapCache offHeapCache;
+    
+    // Block loads currently in progress, shared by concurrent cache misses on the same key
+    private final ConcurrentHashMap<String, CompletableFuture<DataEntry>> inFlightLoads;
+    
+    // Cached entries this close to expiry are reloaded in the background (0 disables)
+    private final long refreshAheadMillis;
+    
+    private final AtomicLong sharedLoads;
+    private final AtomicLong refreshAheadLoads;
+    
+    // Subscribers notified after each committed change
+    private final List<ChangeListener> changeListeners;
+    
+    // Monotonic sequence number assigned to every committed change
+    private final AtomicLong commitSequence;
+    
+    // Background defragmentation of the area
+    private final Compactor compactor;
+    
+    // Serializes changes per key; allocation is serialized separately by each region's allocators
+    private final StripedLocks keyLocks;
+    
+    // Runs block work on the thread owning the chunks (the main thread on Paper)
+    private final TaskScheduler scheduler;
+    
+    // Completes once the chunks are loaded and the area is initialized; block work waits for it
+    private final CompletableFuture<Void> ready;
+    
+    // Chunk columns worked on at once by area-wide jobs (initialization, wipe, growth)
+    private static final int COLUMN_JOB_CONCURRENCY = 4;
     
-    // Cache for recently accessed data
-    private final Map<String, DataEntry> cache;
-    private final Map<String, Long> cacheTimestamps;
+    // How often namespace usage is checked against the growth threshold
+    private static final long GROWTH_CHECK_TICKS = 20L * 5;
     
-    // Current write position
-    private BlockPosition currentWritePosition;
+    private final AtomicBoolean growing;
+    private final AtomicLong growthSteps;
+    private TaskScheduler.Task growthCheck;
     
     public BlockDatabase(MinecraftDBPlugin plugin, ChunkManager chunkManager) {
         this.plugin = plugin;
         this.config = plugin.getConfigManager();
         this.chunkManager = chunkManager;
+        this.area = chunkManager.getLayout();
         this.encoder = new DataEncoder(config.isCompressionEnabled());
-        this.index = new ConcurrentHashMap<>();
-        this.cache = new ConcurrentHashMap<>();
-        this.cacheTimestamps = new ConcurrentHashMap<>();
+        this.regions = new ArrayList<>();
+        for (Namespace namespace : config.getNamespaces()) {
+            regions.add(new StorageRegion(namespace, area.slice(namespace.getMinY(), namespace.getMaxY()),
+                config.getCacheTTLSeconds() * 1000L));
+        }
+        this.offHeapCache = config.isOffHeapCacheEnabled()
+            ? new OffHeapCache(config.getOffHeapCacheBytes(), config.getCacheTTLSeconds() * 1000L)
+            : null;
+        this.inFlightLoads = new ConcurrentHashMap<>();
+        this.refreshAheadMillis = config.getCacheTTLSeconds() * 1000L * config.getRefreshAheadPercent() / 100;
+        this.sharedLoads = new AtomicLong();
+        this.refreshAheadLoads = new AtomicLong();
+        this.changeListeners = new CopyOnWriteArrayList<>();
+        this.commitSequence = new AtomicLong();
+        this.compactor = new Compactor(plugin, this, area);
+        this.keyLocks = new StripedLocks(KEY_LOCK_STRIPES);
+        this.scheduler = plugin.getTaskScheduler();
+        this.ready = new CompletableFuture<>();
+        this.growing = new AtomicBoolean();
+        this.growthSteps = new AtomicLong();
     }
     
     public void initialize() {
-        // Start at the beginning of the database area
-        currentWritePosition = chunkManager.getStartPosition();
-        
         plugin.getLogger().info("Block database initialized");
-        plugin.getLogger().info("  Start position: " + currentWritePosition);
+        plugin.getLogger().info("  Start position: " + area.getStart());
         plugin.getLogger().info("  Total capacity: ~" + getEstimatedCapacity() + " entries");
+        for (StorageRegion region : regions) {
+            plugin.getLogger().info("  Namespace " + region.getNamespace());
+        }
         
         // Scan and rebuild index from existing blocks
         rebuildIndex();
         
-        // Initialize database area with AIR blocks if empty
-        Bukkit.getScheduler().runTask(plugin, this::initializeDatabaseArea);
+        // Once the chunks are loaded, initialize the database area with AIR blocks if empty;
+        // the database stays warming until then. Defragment afterwards if configured.
+        chunkManager.whenReady()
+            .thenCompose(v -> initializeDatabaseArea())
+            .whenComplete((v, error) -> {
+                if (error != null) {
+                    plugin.getLogger().warning("Database area initialization failed: " + error.getMessage());
+                }
+                ready.complete(null);
+                if (config.defragmentOnStartup()) {
+                    scheduler.runGlobal(() -> compactor.start("startup"));
+                }
+            });
+        compactor.schedule(config.getCompactionIntervalMinutes());
+        if (config.isGrowthEnabled()) {
+            growthCheck = scheduler.runGlobalTimer(this::checkGrowth, GROWTH_CHECK_TICKS, GROWTH_CHECK_TICKS);
+        }
     }
     
     /**
-     * Initialize database area with AIR blocks on first run
-     * This ensures the findAvailableSpace method can find AIR blocks
+     * Initialize database area with AIR blocks on first run, via clearColumns over every column
      */
-    private void initializeDatabaseArea() {
-        if (!index.isEmpty()) {
-            plugin.getLogger().info("Database area already has " + index.size() + " entries, skipping initialization");
-            return;
+    private CompletableFuture<Void> initializeDatabaseArea() {
+        if (getEntryCount() > 0) {
+            plugin.getLogger().info("Database area already has " + getEntryCount() + " entries, skipping initialization");
+            return CompletableFuture.completedFuture(null);
         }
         
         plugin.getLogger().info("Initializing database area with AIR blocks...");
         
-        BlockPosition start = chunkManager.getStartPosition();
-        BlockPosition end = chunkManager.getEndPosition();
+        long started = System.currentTimeMillis();
+        AtomicInteger sectionsOccupied = new AtomicInteger();
+        AtomicInteger blocksSet = new AtomicInteger();
         
-        int blocksSet = 0;
-        int blocksChecked = 0;
+        return clearColumns(area, 0, area.getColumnCount(), sectionsOccupied, blocksSet)
+            .thenRun(() -> plugin.getLogger().info("Database area ready in " + (System.currentTimeMillis() - started) + "ms: " +
+                area.getSectionCount() + " sections checked, " +
+                sectionsOccupied.get() + " occupied, " +
+                blocksSet.get() + " blocks converted to AIR"));
+    }
+    
+    /**
+     * Set every block of columns [from, to) to AIR. Works a section at a time: a snapshot of each
+     * chunk is scanned off-thread, empty sections are skipped outright and only sections holding
+     * something are cleared, a few chunk columns per tick.
+     */
+    private CompletableFuture<Void> clearColumns(AreaLayout layout, int from, int to,
+                                                 AtomicInteger sectionsOccupied, AtomicInteger blocksSet) {
+        World world = chunkManager.getWorld();
+        int worldMinY = world.getMinHeight();
         
-        for (int y = start.getY(); y <= end.getY(); y++) {
-            for (int z = start.getZ(); z <= end.getZ(); z++) {
-                for (int x = start.getX(); x <= end.getX(); x++) {
-                    Block block = chunkManager.getWorld().getBlockAt(x, y, z);
-                    blocksChecked++;
-                    
-                    if (block.getType() != Material.AIR) {
-                        block.setType(Material.AIR);
-                        blocksSet++;
-                    }
-                }
-            }
+        List<Integer> columns = new ArrayList<>(to - from);
+        for (int column = from; column < to; column++) {
+            columns.add(column);
         }
         
-        plugin.getLogger().info("Database area ready: " + 
-            blocksChecked + " blocks checked, " + 
-            blocksSet + " converted to AIR");
+        return forEachColumn(columns, column -> {
+            int chunkX = layout.getColumnChunkX(column);
+            int chunkZ = layout.getColumnChunkZ(column);
+            return scheduler.supplyLater(world, chunkX, chunkZ, () -> {
+                    chunkManager.touch(column);
+                    return world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+                })
+                .thenApplyAsync(snapshot -> occupiedSections(layout, column, snapshot, worldMinY), scheduler.async())
+                .thenCompose(sections -> {
+                    if (sections.isEmpty()) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    sectionsOccupied.addAndGet(sections.size());
+                    return scheduler.supplyLater(world, chunkX, chunkZ, () -> {
+                        for (int section : sections) {
+                            forEachBlock(layout, layout.getSectionStart(section), layout.getSectionLength(section), (block, i) -> {
+                                if (block.getType() != Material.AIR) {
+                                    block.setType(Material.AIR, false);
+                                    blocksSet.incrementAndGet();
+                                }
+                                return true;
+                            });
+                        }
+                        return null;
+                    });
+                });
+        });
     }
     
-    public void shutdown() {
-        // Cache is in-memory only, will be lost on shutdown
-        cache.clear();
-        cacheTimestamps.clear();
-        plugin.getLogger().info("Block database shut down");
+    /**
+     * Sections of a column holding anything but AIR, read from a chunk snapshot on any thread
+     */
+    private List<Integer> occupiedSections(AreaLayout layout, int column, ChunkSnapshot snapshot, int worldMinY) {
+        List<Integer> occupied = new ArrayList<>();
+        int perColumn = layout.getSectionsPerColumn();
+        
+        for (int section = column * perColumn; section < (column + 1) * perColumn; section++) {
+            int minY = layout.getSectionMinY(section);
+            if (snapshot.isSectionEmpty((minY - worldMinY) >> 4)) {
+                continue;
+            }
+            
+            int maxY = minY + layout.getSectionLength(section) / 256;
+            search:
+            for (int y = minY; y < maxY; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        if (snapshot.getBlockType(x, y, z) != Material.AIR) {
+                            occupied.add(section);
+                            break search;
+                        }
+                    }
+                }
+            }
+        }
+        return occupied;
     }
     
     /**
-     * Write data to the database
+     * Grow the area if any namespace is past the growth threshold. Rows are appended along z, so
+     * existing offsets stay valid: the new chunks are loaded and cleared in the background, then
+     * every region takes in the new blocks at once and the new bounds are saved to the config.
      */
-    public synchronized void write(String key, byte[] value) throws IOException {
-        if (key == null || key.isEmpty()) {
-            throw new IllegalArgumentException("Key cannot be null or empty");
-        }
-        
-        if (value == null) {
-            throw new IllegalArgumentException("Value cannot be null");
+    public void checkGrowth() {
+        if (!config.isGrowthEnabled() || !ready.isDone() || growing.get()) {
+            return;
         }
         
-        // Check if key already exists - delete old entry first
-        if (index.containsKey(key)) {
-            delete(key);
+        int fullest = 0;
+        for (StorageRegion region : regions) {
+            long total = region.getTotalBlocks();
+            fullest = Math.max(fullest, (int) ((total - region.getFreeBlocks()) * 100 / total));
         }
-        
-        // Encode data to blocks
-        List<Material> blocks = encoder.encodeToBlocks(value);
-        int blocksNeeded = blocks.size();
-        
-        if (config.logOperations()) {
-            plugin.getLogger().info("Writing entry: " + key + " (" + value.length + " bytes, " + blocksNeeded + " blocks)");
+        AreaLayout current = area;
+        int rows = Math.min(config.getGrowthRowsPerStep(), config.getGrowthMaxChunkZ() - current.getMaxChunkZ());
+        if (fullest < config.getGrowthThresholdPercent() || rows <= 0 || !growing.compareAndSet(false, true)) {
+            return;
         }
         
-        // Find space and write blocks
-        BlockPosition startPos = findAvailableSpace(blocksNeeded);
-        if (startPos == null) {
-            throw new IOException("No available space in database!");
+        AreaLayout grown = current.extend(rows);
+        if (grown.getColumnCount() > chunkManager.getMaxColumnCount()) {
+            growing.set(false);
+            return;
         }
+        plugin.getLogger().info("Namespace usage at " + fullest + "%, growing the database area to end-z " + grown.getMaxChunkZ());
         
-        writeBlocks(startPos, blocks);
-        
-        // Update index
-        int chunkX = startPos.getX() >> 4;
-        int chunkZ = startPos.getZ() >> 4;
-        DataAddress address = new DataAddress(chunkX, chunkZ, startPos, blocksNeeded);
-        index.put(key, address);
-        
-        // Update cache
-        DataEntry entry = new DataEntry(key, value, startPos);
-        updateCache(key, entry);
-        
-        if (config.logOperations()) {
-            plugin.getLogger().info("  Written at: " + startPos);
+        long started = System.currentTimeMillis();
+        int from = current.getColumnCount();
+        int to = grown.getColumnCount();
+        chunkManager.loadColumns(from, to)
+            .thenCompose(v -> clearColumns(grown, from, to, new AtomicInteger(), new AtomicInteger()))
+            .thenRun(() -> scheduler.runGlobal(() -> {
+                commitGrowth(grown);
+                plugin.getLogger().info("Database area grown by " + (to - from) + " chunks in "
+                    + (System.currentTimeMillis() - started) + "ms, capacity now ~" + getEstimatedCapacity() + " entries");
+            }))
+            .whenComplete((v, error) -> {
+                if (error != null) {
+                    plugin.getLogger().warning("Growing the database area failed: " + error.getMessage());
+                    growing.set(false);
+                }
+            });
+    }
+    
+    private void commitGrowth(AreaLayout grown) {
+        keyLocks.lockAll();
+        try {
+            for (StorageRegion region : regions) {
+                region.grow(grown);
+            }
+            area = grown;
+            chunkManager.setLayout(grown);
+        } finally {
+            keyLocks.unlockAll();
         }
+        config.setChunkEndZ(grown.getMaxChunkZ());
+        growthSteps.incrementAndGet();
+        growing.set(false);
+    }
+    
+    public long getGrowthSteps() {
+        return growthSteps.get();
     }
     
     /**
-     * Read data from the database
+     * Run a step for each chunk column, a few columns at a time. Steps that touch blocks should
+     * schedule themselves in a later tick, so the job spreads over ticks. Completes after the
+     * last step.
      */
-    public byte[] read(String key) throws IOException {
-        if (key == null || key.isEmpty()) {
-            throw new IllegalArgumentException("Key cannot be null or empty");
+    private CompletableFuture<Void> forEachColumn(Collection<Integer> columns, IntFunction<CompletableFuture<?>> step) {
+        if (columns.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
         }
         
-        // Check cache first
-        DataEntry cached = getFromCache(key);
-        if (cached != null) {
-            if (config.logPerformance()) {
-                plugin.getLogger().info("Cache hit for key: " + key);
-            }
-            return cached.getValue();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Queue<Integer> queue = new ConcurrentLinkedQueue<>(columns);
+        AtomicInteger remaining = new AtomicInteger(queue.size());
+        for (int i = 0; i < Math.min(COLUMN_JOB_CONCURRENCY, queue.size()); i++) {
+            nextColumn(queue, remaining, done, step);
         }
-        
-        // Get address from index
-        DataAddress address = index.get(key);
-        if (address == null) {
-            throw new IOException("Key not found: " + key);
+        return done;
+    }
+    
+    private void nextColumn(Queue<Integer> queue, AtomicInteger remaining, CompletableFuture<Void> done,
+                            IntFunction<CompletableFuture<?>> step) {
+        Integer column = queue.poll();
+        if (column == null) {
+            return;
         }
-        
-        if (config.logOperations()) {
-            plugin.getLogger().info("Reading entry: " + key);
+        step.apply(column).whenComplete((result, error) -> {
+            if (error != null) {
+                plugin.getLogger().warning("Chunk column " + column + ": " + error.getMessage());
+            }
+            if (remaining.decrementAndGet() == 0) {
+                done.complete(null);
+            } else {
+                nextColumn(queue, remaining, done, step);
+            }
+        });
+    }
+    
+    /**
+     * Run a task on the thread owning the key's chunks and complete with its result. An existing
+     * entry is handled where its first block lies; a new key is homed on a chunk column picked
+     * by its hash, so on Folia writes to different chunk groups run in parallel. While the
+     * database is warming the task is queued until all chunks are loaded.
+     */
+    public <T> CompletableFuture<T> supplyForKey(String key, Supplier<T> task) {
+        if (!ready.isDone()) {
+            return ready.thenCompose(v -> supplyForKey(key, task));
         }
         
-        // Read blocks
-        List<Material> blocks = readBlocks(address.getBlockPosition(), address.getBlockCount());
-        
-        // Decode blocks to data
-        byte[] data = encoder.decodeFromBlocks(blocks);
-        
-        // Update cache
-        DataEntry entry = new DataEntry(key, data, address.getBlockPosition());
-        updateCache(key, entry);
-        
-        return data;
+        int chunkX;
+        int chunkZ;
+        CompletableFuture<Void> loaded;
+        StorageRegion region = key == null || key.isEmpty() ? null : regionFor(key);
+        DataAddress address = region == null ? null : region.lookup(key);
+        if (address != null) {
+            chunkX = address.getChunkX();
+            chunkZ = address.getChunkZ();
+            // Bring unloaded chunks of the entry in first instead of loading them on the tick
+            loaded = ensureLoaded(region.getLayout(), address);
+        } else {
+            int column = Math.floorMod(key == null ? 0 : key.hashCode(), area.getColumnCount());
+            chunkX = area.getColumnChunkX(column);
+            chunkZ = area.getColumnChunkZ(column);
+            loaded = CompletableFuture.completedFuture(null);
+        }
+        return loaded.thenCompose(v -> scheduler.supply(chunkManager.getWorld(), chunkX, chunkZ, task));
     }
     
     /**
-     * Delete data from the database
+     * Columns to try first when placing: owned ones whose chunks are resident, so new entries
+     * go to chunks that are already loaded. Null when every chunk stays resident.
      */
-    public synchronized void delete(String key) throws IOException {
-        if (key == null || key.isEmpty()) {
-            throw new IllegalArgumentException("Key cannot be null or empty");
+    private IntPredicate preferredColumns(IntPredicate owned) {
+        if (!chunkManager.unloadsIdleChunks()) {
+            return null;
         }
-        
-        DataAddress address = index.get(key);
-        if (address == null) {
-            throw new IOException("Key not found: " + key);
+        return owned == null ? chunkManager::isResident : column -> chunkManager.isResident(column) && owned.test(column);
+    }
+    
+    /**
+     * Chunk columns the current thread may place blocks in, null when it may use all of them
+     */
+    private IntPredicate ownedColumns(AreaLayout layout) {
+        if (!scheduler.isFolia()) {
+            return null;
         }
-        
-        if (config.logOperations()) {
-            plugin.getLogger().info("Deleting entry: " + key);
+        World world = chunkManager.getWorld();
+        return column -> scheduler.isOwnedByCurrentThread(world,
+            layout.getColumnChunkX(column), layout.getColumnChunkZ(column));
+    }
+    
+    public void shutdown() {
+        compactor.stop();
+        if (growthCheck != null) {
+            growthCheck.cancel();
+            growthCheck = null;
         }
         
-        // Clear blocks (set to AIR)
-        clearBlocks(address.getBlockPosition(), address.getBlockCount());
-        
-        // Remove from index and cache
-        index.remove(key);
-        cache.remove(key);
-        cacheTimestamps.remove(key);
+        // Cache is in-memory only, will be lost on shutdown
+        clearCache();
+        plugin.getLogger().info("Block database shut down");
     }
     
     /**
-     * List all keys in the database
+     * Encode (and compress) a value into block symbols. Touches no shared state, so callers can
+     * do it on their own thread before handing the write to the owning thread.
      */
-    public Set<String> listKeys() {
-        return new HashSet<>(index.keySet());
+    public EncodedValue encode(byte[] value) throws IOException {
+        return encode(value, encoder.isCompressionEnabled());
     }
     
     /**
-     * Check if a key exists
+     * Write data to the database, returns the new version of the entry
      */
-    public boolean exists(String key) {
-        return index.containsKey(key);
+    public long write(String key, byte[] value) throws IOException {
+        validateWrite(key, value);
+        
+        // Skip encoding when the same content is already stored
+        DataAddress existing = getAddress(key);
+        if (isUnchanged(existing, value)) {
+            return skipUnchanged(key, existing);
+        }
+        
+        return write(key, encode(value));
     }
     
     /**
-     * Clear all data from database
+     * Write an already encoded value, returns the new version of the entry
      */
-    public synchronized int clearAll() {
-        int count = index.size();
+    public long write(String key, EncodedValue encoded) throws IOException {
+        validateWrite(key, encoded.getValue());
+        StorageRegion region = regionFor(key);
         
-        // Clear all blocks
-        BlockPosition start = chunkManager.getStartPosition();
-        BlockPosition end = chunkManager.getEndPosition();
-        
-        for (int x = start.getX(); x <= end.getX(); x++) {
-            for (int y = start.getY(); y <= end.getY(); y++) {
-                for (int z = start.getZ(); z <= end.getZ(); z++) {
-                    Block block = chunkManager.getWorld().getBlockAt(x, y, z);
-                    block.setType(Material.AIR);
-                }
+        ReentrantLock lock = keyLocks.lock(key);
+        try {
+            // Same content is already stored - nothing to place
+            DataAddress existing = region.getIndex().get(key);
+            if (isUnchanged(existing, encoded.getValue())) {
+                return skipUnchanged(key, existing);
             }
+            
+            return writeEntry(region, key, encoded);
+        } finally {
+            lock.unlock();
         }
-        
-        // Clear index and cache
-        index.clear();
-        cache.clear();
-        cacheTimestamps.clear();
-        
-        // Reset write position
-        currentWritePosition = start;
-        
-        return count;
     }
     
     /**
-     * Get number of entries
+     * Write only if the entry is currently at the expected version.
+     * An expected version of 0 means the key must not exist.
      */
-    public int getEntryCount() {
-        return index.size();
+    public long compareAndWrite(String key, long expectedVersion, byte[] value) throws IOException {
+        validateWrite(key, value);
+        
+        // Fail stale writers before paying for encoding; checked again under the lock
+        long currentVersion = getVersion(key);
+        if (currentVersion != expectedVersion) {
+            throw new VersionConflictException(key, expectedVersion, currentVersion);
+        }
+        return compareAndWrite(key, expectedVersion, encode(value));
     }
     
     /**
-     * Get cache size
+     * Conditional write of an already encoded value
      */
-    public int getCacheSize() {
-        cleanExpiredCache();
-        return cache.size();
+    public long compareAndWrite(String key, long expectedVersion, EncodedValue encoded) throws IOException {
+        validateWrite(key, encoded.getValue());
+        
+        ReentrantLock lock = keyLocks.lock(key);
+        try {
+            long currentVersion = getVersion(key);
+            if (currentVersion != expectedVersion) {
+                throw new VersionConflictException(key, expectedVersion, currentVersion);
+            }
+            
+            return writeEntry(regionFor(key), key, encoded);
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
-     * Get estimated capacity
+     * Write only if the key does not exist yet
      */
-    public int getEstimatedCapacity() {
-        int totalBlocks = chunkManager.getTotalBlocks();
-        int blocksPerEntry = config.getBlocksPerKey() + config.getBlocksPerValue();
-        return totalBlocks / blocksPerEntry;
+    public long writeIfAbsent(String key, byte[] value) throws IOException {
+        return compareAndWrite(key, 0, value);
     }
     
     /**
-     * Get used capacity percentage
+     * Append bytes to the end of an entry, returns the new version or 0 if the key does not exist.
+     * Raw entries grow in place when the following blocks are free, otherwise a new extent is
+     * chained on. Compressed entries can't be extended, so they are rewritten once as raw.
      */
-    public int getUsedCapacity() {
-        int total = getEstimatedCapacity();
-        int used = getEntryCount();
-        return total > 0 ? (used * 100 / total) : 0;
+    public long append(String key, byte[] bytes) throws IOException {
+        validateWrite(key, bytes);
+        List<Material> symbols = encoder.encodeToBlocks(bytes, false);
+        
+        ReentrantLock lock = keyLocks.lock(key);
+        try {
+            return appendEncoded(key, bytes, symbols);
+        } finally {
+            lock.unlock();
+        }
     }
     
-    // Private helper methods
-    
-    private BlockPosition findAvailableSpace(int blocksNeeded) {
-        BlockPosition start = chunkManager.getStartPosition();
-        BlockPosition end = chunkManager.getEndPosition();
+    private long appendEncoded(String key, byte[] bytes, List<Material> symbols) throws IOException {
+        StorageRegion region = regionFor(key);
+        DataAddress address = region.getIndex().get(key);
+        if (address == null) {
+            return 0;
+        }
         
-        plugin.getLogger().info("Finding space for " + blocksNeeded + " blocks");
-        plugin.getLogger().info("Search range: " + start + " to " + end);
-        plugin.getLogger().info("Current write position: " + currentWritePosition);
+        if (bytes.length == 0) {
+            return address.getVersion();
+        }
         
-        BlockPosition pos = currentWritePosition;
-        int attempts = 0;
-        int maxAttempts = 1000;
+        if (address.isCompressed()) {
+            byte[] rewritten = applyPatch(readValue(region, address), address.getValueSize(), bytes);
+            return writeEntry(region, key, encode(rewritten, false));
+        }
         
-        // Linear search for available space
-        while (attempts < maxAttempts) {
-            if (isSpaceAvailable(pos, blocksNeeded)) {
-                plugin.getLogger().info("Found space at: " + pos + " after " + attempts + " attempts");
-                currentWritePosition = pos.offset(blocksNeeded, 0, 0);
-                return pos;
-            }
-            
-            // Log first few attempts
-            if (attempts < 5) {
-                Block block = chunkManager.getWorld().getBlockAt(pos.getX(), pos.getY(), pos.getZ());
-                plugin.getLogger().info("Attempt " + attempts + " at " + pos + ": block type = " + block.getType());
-            }
-            
-            // Move to next position
-            pos = pos.offset(1, 0, 0);
-            
-            // Wrap to next row/layer if needed
-            if (pos.getX() > end.getX()) {
-                pos = new BlockPosition(start.getX(), pos.getY(), pos.getZ() + 1);
-            }
-            if (pos.getZ() > end.getZ()) {
-                pos = new BlockPosition(start.getX(), pos.getY() + 1, start.getZ());
-            }
-            if (pos.getY() > end.getY()) {
-                plugin.getLogger().warning("Exceeded Y boundary after " + attempts + " attempts");
-                return null;
-            }
-            
-            attempts++;
+        List<Extent> extents = appendBlocks(region, address, symbols);
+        
+        if (config.logOperations()) {
+            plugin.getLogger().info("Appended " + bytes.length + " bytes to " + key + " (" + extents.size() + " extents)");
         }
         
-        plugin.getLogger().warning("Max attempts (" + maxAttempts + ") reached without finding space");
-        return null;
+        DataEntry cached = getFromCache(region, key);
+        byte[] updated = cached != null ? applyPatch(cached.getValue(), address.getValueSize(), bytes) : null;
+        return commitMutation(region, key, address, extents, ChangeEvent.Operation.APPEND, updated);
     }
     
-    private boolean isSpaceAvailable(BlockPosition start, int count) {
-        BlockPosition pos = start;
-        BlockPosition end = chunkManager.getEndPosition();
-        int width = end.getX() - chunkManager.getStartPosition().getX() + 1;
+    /**
+     * Overwrite bytes starting at the given offset, returns the new version or 0 if the key
+     * does not exist.
+     * Only blocks whose symbol changes are placed; bytes past the end of the value are appended.
+     */
+    public long patch(String key, int offset, byte[] bytes) throws IOException {
+        validateWrite(key, bytes);
+        List<Material> symbols = encoder.encodeToBlocks(bytes, false);
         
-        for (int i = 0; i < count; i++) {
-            if (!chunkManager.isInDatabaseArea(pos)) {
-                return false;
-            }
-            Block block = chunkManager.getWorld().getBlockAt(pos.getX(), pos.getY(), pos.getZ());
-            if (block.getType() != Material.AIR) {
-                return false;
-            }
-            
-            // Move to next block (wrap to next row if needed)
-            pos = pos.offset(1, 0, 0);
-            if (pos.getX() > end.getX()) {
-                pos = new BlockPosition(chunkManager.getStartPosition().getX(), pos.getY(), pos.getZ() + 1);
-            }
-            if (pos.getZ() > end.getZ()) {
-                pos = new BlockPosition(chunkManager.getStartPosition().getX(), pos.getY() + 1, chunkManager.getStartPosition().getZ());
-            }
+        ReentrantLock lock = keyLocks.lock(key);
+        try {
+            return patchEncoded(key, offset, bytes, symbols);
+        } finally {
+            lock.unlock();
         }
-        return true;
     }
     
-    private void writeBlocks(BlockPosition start, List<Material> materials) {
-        BlockPosition pos = start;
-        BlockPosition end = chunkManager.getEndPosition();
+    private long patchEncoded(String key, int offset, byte[] bytes, List<Material> symbols) throws IOException {
+        StorageRegion region = regionFor(key);
+        DataAddress address = region.getIndex().get(key);
+        if (address == null) {
+            return 0;
+        }
         
-        for (int i = 0; i < materials.size(); i++) {
-            Block block = chunkManager.getWorld().getBlockAt(pos.getX(), pos.getY(), pos.getZ());
-            block.setType(materials.get(i));
-            
-            // Move to next block (wrap to next row if needed)
-            if (i < materials.size() - 1) {  // Don't advance after last block
-                pos = pos.offset(1, 0, 0);
-                if (pos.getX() > end.getX()) {
-                    pos = new BlockPosition(chunkManager.getStartPosition().getX(), pos.getY(), pos.getZ() + 1);
-                }
-                if (pos.getZ() > end.getZ()) {
-                    pos = new BlockPosition(chunkManager.getStartPosition().getX(), pos.getY() + 1, chunkManager.getStartPosition().getZ());
-                }
-            }
+        if (address.isCompressed()) {
+            byte[] current = readValue(region, address);
+            checkPatchOffset(offset, current.length);
+            return writeEntry(region, key, encode(applyPatch(current, offset, bytes), false));
         }
-    }
-    
-    private List<Material> readBlocks(BlockPosition start, int count) {
-        List<Material> materials = new ArrayList<>();
-        BlockPosition pos = start;
-        BlockPosition end = chunkManager.getEndPosition();
         
-        for (int i = 0; i < count; i++) {
-            Block block = chunkManager.getWorld().getBlockAt(pos.getX(), pos.getY(), pos.getZ());
-            materials.add(block.getType());
-            
-            // Move to next block (wrap to next row if needed)
-            if (i < count - 1) {  // Don't advance after last block
-                pos = pos.offset(1, 0, 0);
-                if (pos.getX() > end.getX()) {
-                    pos = new BlockPosition(chunkManager.getStartPosition().getX(), pos.getY(), pos.getZ() + 1);
-                }
-                if (pos.getZ() > end.getZ()) {
-                    pos = new BlockPosition(chunkManager.getStartPosition().getX(), pos.getY() + 1, chunkManager.getStartPosition().getZ());
-                }
-            }
+        // Raw encoding stores each byte as two blocks
+        int size = address.getBlockCount() / 2;
+        checkPatchOffset(offset, size);
+        
+        int inPlace = Math.min(symbols.size(), (size - offset) * 2);
+        
+        int changed = patchBlocks(region, address, offset * 2, symbols.subList(0, inPlace));
+        
+        List<Extent> extents = address.getExtents();
+        if (inPlace < symbols.size()) {
+            extents = appendBlocks(region, address, symbols.subList(inPlace, symbols.size()));
+        }
+        
+        if (config.logOperations()) {
+            plugin.getLogger().info("Patched " + bytes.length + " bytes of " + key + " at offset " + offset +
+                " (" + changed + " blocks changed)");
         }
-        return materials;
+        
+        DataEntry cached = getFromCache(region, key);
+        byte[] updated = cached != null ? applyPatch(cached.getValue(), offset, bytes) : null;
+        return commitMutation(region, key, address, extents, ChangeEvent.Operation.PATCH, updated);
+    }
+    
+    /**
+     * Check whether a key already holds exactly this value, using the stored fingerprint.
+     * Safe to call off the main thread.
+     */
+    public boolean isUnchanged(String key, byte[] value) {
+        return isUnchanged(getAddress(key), value);
+    }
+    
+    /**
+     * Check whether an index entry already holds exactly this value
+     */
+    public boolean isUnchanged(DataAddress address, byte[] value) {
+        return address != null
+            && address.getFingerprint() != Fingerprint.UNKNOWN
+            && address.getValueSize() == value.length
+            && address.getFingerprint() == Fingerprint.of(value);
+    }
+    
+    /**
+     * Get the index entry for a key, null if it does not exist
+     */
+    public DataAddress getAddress(String key) {
+        return regionFor(key).lookup(key);
+    }
+    
+    /**
+     * Get the current version of an entry, 0 if the key does not exist
+     */
+    public long getVersion(String key) {
+        DataAddress address = getAddress(key);
+        return address != null ? address.getVersion() : 0;
     }
     
-    private void clearBlocks(BlockPosition start, int count) {
-        BlockPosition pos = start;
-        BlockPosition end = chunkManager.getEndPosition();
+    /**
+     * Read data from the database, null if the key does not exist. A miss is a normal result,
+     * IOException is left for blocks that can't be read or decoded.
+     */
+    public byte[] read(String key) throws IOException {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("Key cannot be null or empty");
+        }
         
-        for (int i = 0; i < count; i++) {
-            Block block = chunkManager.getWorld().getBlockAt(pos.getX(), pos.getY(), pos.getZ());
-            block.setType(Material.AIR);
-            
-            // Move to next block (wrap to next row if needed)
-            if (i < count - 1) {  // Don't advance after last block
-                pos = pos.offset(1, 0, 0);
-                if (pos.getX() > end.getX()) {
-                    pos = new BlockPosition(chunkManager.getStartPosition().getX(), pos.getY(), pos.getZ() + 1);
-                }
-                if (pos.getZ() > end.getZ()) {
-                    pos = new BlockPosition(chunkManager.getStartPosition().getX(), pos.getY() + 1, chunkManager.getStartPosition().getZ());
-                }
+        StorageRegion region = regionFor(key);
+        region.recordRead();
+        
+        // Check cache first
+        DataEntry cached = getFromCache(region, key);
+        if (cached != null) {
+            if (config.logPerformance()) {
+                plugin.getLogger().info("Cache hit for key: " + key);
             }
+            return cached.getValue();
         }
+        
+        DataEntry entry = region.getKeyFilter().mightContain(key) ? loadFromBlocks(region, key) : null;
+        return entry != null ? entry.getValue() : null;
     }
     
-    private void updateCache(String key, DataEntry entry) {
-        if (cache.size() >= config.getCacheSize()) {
-            evictOldestCacheEntry();
-        }
-        cache.put(key, entry);
-        cacheTimestamps.put(key, System.currentTimeMillis());
+    /**
+     * Read a value from any thread. Cache hits complete immediately; misses share a single
+     * block load per key on the thread owning the entry, so a burst of reads on a cold hot key decodes it once.
+     * Completes with null if the key does not exist.
+     */
+    public CompletableFuture<byte[]> readAsync(String key) {
+        return readVersioned(key).thenApply(entry -> entry != null ? entry.getValue() : null);
     }
     
-    private DataEntry getFromCache(String key) {
-        Long timestamp = cacheTimestamps.get(key);
-        if (timestamp == null) {
-            return null;
+    /**
+     * Like readAsync, but completes with the value and the version it was stored at, taken
+     * from the same cache entry or index entry. Use this version for a following CAS.
+     */
+    public CompletableFuture<DataEntry> readVersioned(String key) {
+        if (key == null || key.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Key cannot be null or empty"));
         }
         
-        long age = System.currentTimeMillis() - timestamp;
-        long maxAge = config.getCacheTTLSeconds() * 1000L;
+        StorageRegion region = regionFor(key);
+        region.recordRead();
         
-        if (age > maxAge) {
-            cache.remove(key);
-            cacheTimestamps.remove(key);
-            return null;
+        DataEntry cached = getFromCache(region, key);
+        if (cached != null) {
+            refreshIfExpiring(region, key);
+            return CompletableFuture.completedFuture(cached);
         }
         
-        return cache.get(key);
+        if (region.lookup(key) == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        return loadShared(region, key);
     }
     
-    private void evictOldestCacheEntry() {
-        String oldestKey = null;
-        long oldestTimestamp = Long.MAX_VALUE;
-        
-        for (Map.Entry<String, Long> entry : cacheTimestamps.entrySet()) {
-            if (entry.getValue() < oldestTimestamp) {
-                oldestTimestamp = entry.getValue();
-                oldestKey = entry.getKey();
-            }
+    /**
+     * Copy a value held by the off-heap cache straight into the stream (e.g. a response encoder)
+     * and return its version, or -1 if it isn't cached there; nothing is written then and the
+     * caller falls back to readVersioned.
+     */
+    public long readCached(String key, OutputStream out) throws IOException {
+        if (offHeapCache == null || key == null || key.isEmpty()) {
+            return -1;
         }
         
-        if (oldestKey != null) {
-            cache.remove(oldestKey);
-            cacheTimestamps.remove(oldestKey);
+        StorageRegion region = regionFor(key);
+        long version = offHeapCache.read(key, out);
+        if (version >= 0) {
+            region.recordRead();
+            refreshIfExpiring(region, key);
         }
+        return version;
     }
     
-    private void cleanExpiredCache() {
-        long now = System.currentTimeMillis();
-        long maxAge = config.getCacheTTLSeconds() * 1000L;
-        
-        List<String> expiredKeys = new ArrayList<>();
-        for (Map.Entry<String, Long> entry : cacheTimestamps.entrySet()) {
-            if (now - entry.getValue() > maxAge) {
-                expiredKeys.add(entry.getKey());
-            }
+    /**
+     * Reload a cached entry about to expire before readers start missing on it
+     */
+    private void refreshIfExpiring(StorageRegion region, String key) {
+        if (refreshAheadMillis > 0 && isExpiringSoon(region, key) && !inFlightLoads.containsKey(key)) {
+            refreshAheadLoads.incrementAndGet();
+            loadShared(region, key);
         }
-        
-        for (String key : expiredKeys) {
-            cache.remove(key);
-            cacheTimestamps.remove(key);
+    }
+    
+    /**
+     * Delete data from the database, false if the key does not exist
+     */
+    public boolean delete(String key) throws IOException {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("Key cannot be null or empty");
+        }
+        
+        StorageRegion region = regionFor(key);
+        ReentrantLock lock = keyLocks.lock(key);
+        try {
+            DataAddress address = region.getIndex().get(key);
+            if (address == null) {
+                return false;
+            }
+            
+            if (config.logOperations()) {
+                plugin.getLogger().info("Deleting entry: " + key);
+            }
+            
+            removeEntry(region, key, address);
+            region.recordDelete();
+            
+            fireChange(new ChangeEvent(key, ChangeEvent.Operation.DELETE, commitSequence.incrementAndGet(), null));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Subscribe to committed writes, deletes and clears
+     */
+    public void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+    
+    public void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+    
+    /**
+     * Get the sequence number of the last committed change
+     */
+    public long getCommitSequence() {
+        return commitSequence.get();
+    }
+    
+    /**
+     * List all keys in the database
+     */
+    public Set<String> listKeys() {
+        Set<String> keys = new HashSet<>();
+        for (StorageRegion region : regions) {
+            keys.addAll(region.getIndex().keys());
+        }
+        return keys;
+    }
+    
+    /**
+     * Scan keys in sorted order, starting after the cursor and limited to the given prefix.
+     * Only walks the requested range of the index, so the cost is bounded by the limit.
+     */
+    public ScanPage scan(String prefix, String cursor, int limit) {
+        return scanRange(prefix, cursor, Math.min(limit, MAX_SCAN_LIMIT));
+    }
+    
+    /**
+     * Scan keys for a fingerprint listing, allowing larger pages than a regular scan
+     */
+    public ScanPage scanForFingerprints(String prefix, String cursor, int limit) {
+        return scanRange(prefix, cursor, Math.min(limit, MAX_FINGERPRINT_LIMIT));
+    }
+    
+    private ScanPage scanRange(String prefix, String cursor, int limit) {
+        String from = prefix == null ? "" : prefix;
+        int pageSize = Math.max(1, limit);
+        
+        // Resume after the cursor if it lies inside the prefix range
+        boolean inclusive = true;
+        if (cursor != null && !cursor.isEmpty() && cursor.compareTo(from) >= 0) {
+            from = cursor;
+            inclusive = false;
+        }
+        
+        // Fetch one extra key to know whether more remain in range, merging the regions the
+        // prefix can reach. Each shard returns its keys in order, so the first pageSize + 1 of
+        // the merged list are the first pageSize + 1 overall.
+        List<String> keys = new ArrayList<>();
+        for (StorageRegion region : regions) {
+            if (region.overlaps(prefix)) {
+                keys.addAll(region.getIndex().range(from, inclusive, prefix, pageSize + 1));
+            }
+        }
+        Collections.sort(keys);
+        if (keys.size() > pageSize + 1) {
+            keys = keys.subList(0, pageSize + 1);
+        }
+        String nextCursor = null;
+        
+        if (keys.size() > pageSize) {
+            // Resume after the last returned key
+            keys = new ArrayList<>(keys.subList(0, pageSize));
+            nextCursor = keys.get(pageSize - 1);
+        }
+        
+        return new ScanPage(keys, nextCursor);
+    }
+    
+    /**
+     * Check if a key exists
+     */
+    public boolean exists(String key) {
+        StorageRegion region = regionFor(key);
+        return region.getKeyFilter().mightContain(key) && region.getIndex().containsKey(key);
+    }
+    
+    /**
+     * Clear all data from database. Entries are gone on return; their blocks are wiped over the
+     * following ticks. Only runs the allocators have in use are visited (the rest of the area is
+     * AIR already), and each stays reserved until it is cleared.
+     */
+    public int clearAll() {
+        keyLocks.lockAll();
+        try {
+            int count = getEntryCount();
+            
+            // Queue the used runs per chunk column, then drop every region's entries
+            Map<Integer, List<Runnable>> wipes = new TreeMap<>();
+            AtomicInteger blocksCleared = new AtomicInteger();
+            for (StorageRegion region : regions) {
+                for (long[] run : region.getAllocator().getUsedRuns()) {
+                    addWipes(region, run[0], (int) run[1], wipes, blocksCleared);
+                }
+                region.clear();
+            }
+            inFlightLoads.clear();
+            clearCache();
+            
+            fireChange(new ChangeEvent(null, ChangeEvent.Operation.CLEAR, commitSequence.incrementAndGet(), null));
+            
+            World world = chunkManager.getWorld();
+            long started = System.currentTimeMillis();
+            forEachColumn(wipes.keySet(), column -> scheduler.supplyLater(world,
+                area.getColumnChunkX(column), area.getColumnChunkZ(column), () -> {
+                    wipes.get(column).forEach(Runnable::run);
+                    return null;
+                }))
+                .thenRun(() -> plugin.getLogger().info("Database wipe finished in " + (System.currentTimeMillis() - started)
+                    + "ms: " + blocksCleared.get() + " blocks cleared in " + wipes.size() + " chunk columns"));
+            
+            return count;
+        } finally {
+            keyLocks.unlockAll();
+        }
+    }
+    
+    /**
+     * Queue clearing a used run, split at chunk columns. Each piece is released once cleared.
+     */
+    private void addWipes(StorageRegion region, long start, int length, Map<Integer, List<Runnable>> wipes,
+                          AtomicInteger cleared) {
+        AreaLayout layout = region.getLayout();
+        long end = start + length;
+        while (start < end) {
+            int column = layout.getColumnIndex(start);
+            long pieceStart = start;
+            int pieceLength = (int) (Math.min(end, (long) (column + 1) * layout.getColumnSize()) - start);
+            wipes.computeIfAbsent(column, c -> new ArrayList<>()).add(() -> {
+                forEachBlock(layout, pieceStart, pieceLength, (block, i) -> {
+                    if (block.getType() != Material.AIR) {
+                        block.setType(Material.AIR, false);
+                        cleared.incrementAndGet();
+                    }
+                    return true;
+                });
+                region.getAllocator().release(pieceStart, pieceLength);
+            });
+            start += pieceLength;
+        }
+    }
+    
+    /**
+     * Get number of entries
+     */
+    public int getEntryCount() {
+        int count = 0;
+        for (StorageRegion region : regions) {
+            count += region.getEntryCount();
+        }
+        return count;
+    }
+    
+    public Compactor getCompactor() {
+        return compactor;
+    }
+    
+    /**
+     * False while the database chunks are loading or the area is being initialized
+     */
+    public boolean isReady() {
+        return ready.isDone();
+    }
+    
+    /**
+     * Key stripe locks, for contention statistics
+     */
+    public StripedLocks getKeyLocks() {
+        return keyLocks;
+    }
+    
+    /**
+     * Namespace regions, longest prefix first
+     */
+    public List<StorageRegion> getRegions() {
+        return Collections.unmodifiableList(regions);
+    }
+    
+    /**
+     * Number of unallocated blocks in the database area
+     */
+    public long getFreeBlocks() {
+        long free = 0;
+        for (StorageRegion region : regions) {
+            free += region.getFreeBlocks();
+        }
+        return free;
+    }
+    
+    /**
+     * Entries placed [within one chunk section, within one chunk column, spanning chunks]
+     */
+    public long[] getPlacementCounts() {
+        long[] counts = new long[3];
+        for (StorageRegion region : regions) {
+            long[] placements = region.getAllocator().getPlacementCounts();
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += placements[i];
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Allocated span summed over regions: one past the highest allocated offset of each
+     */
+    public long getHighWaterMark() {
+        long mark = 0;
+        for (StorageRegion region : regions) {
+            mark += region.getAllocator().getHighWaterMark();
+        }
+        return mark;
+    }
+    
+    /**
+     * Approximate heap used by the primary index
+     */
+    public long getIndexMemoryBytes() {
+        long bytes = 0;
+        for (StorageRegion region : regions) {
+            bytes += region.getIndexMemoryBytes();
+        }
+        return bytes;
+    }
+    
+    /**
+     * Get cache size
+     */
+    public int getCacheSize() {
+        int size = offHeapCache != null ? offHeapCache.size() : 0;
+        for (StorageRegion region : regions) {
+            size += region.getCache().size();
+        }
+        return size;
+    }
+    
+    /**
+     * Get hit/miss/eviction counters, summed over the region caches
+     */
+    public CacheStats getCacheStats() {
+        int entries = 0;
+        int maxEntries = 0;
+        long bytes = 0, maxBytes = 0, hits = 0, misses = 0, evictions = 0, expirations = 0;
+        for (StorageRegion region : regions) {
+            CacheStats stats = region.getCacheStats();
+            entries += stats.getEntries();
+            maxEntries += stats.getMaxEntries();
+            bytes += stats.getBytes();
+            maxBytes += stats.getMaxBytes();
+            hits += stats.getHits();
+            misses += stats.getMisses();
+            evictions += stats.getEvictions();
+            expirations += stats.getExpirations();
+        }
+        return new CacheStats(entries, bytes, maxEntries, maxBytes, hits, misses, evictions, expirations);
+    }
+    
+    /**
+     * Get off-heap cache tier counters, null if the tier is disabled
+     */
+    public CacheStats getOffHeapCacheStats() {
+        return offHeapCache != null ? offHeapCache.getStats() : null;
+    }
+    
+    /**
+     * Number of cache misses that joined a block load already in flight for the same key
+     */
+    public long getSharedLoadCount() {
+        return sharedLoads.get();
+    }
+    
+    /**
+     * Number of background reloads started for entries close to expiry
+     */
+    public long getRefreshAheadCount() {
+        return refreshAheadLoads.get();
+    }
+    
+    /**
+     * Number of lookups the key filters answered as definite misses
+     */
+    public long getFilterNegativeCount() {
+        long negatives = 0;
+        for (StorageRegion region : regions) {
+            negatives += region.getKeyFilter().getNegatives();
+        }
+        return negatives;
+    }
+    
+    /**
+     * Get estimated capacity
+     */
+    public int getEstimatedCapacity() {
+        int totalBlocks = chunkManager.getTotalBlocks();
+        int blocksPerEntry = config.getBlocksPerKey() + config.getBlocksPerValue();
+        return totalBlocks / blocksPerEntry;
+    }
+    
+    /**
+     * Get used capacity percentage
+     */
+    public int getUsedCapacity() {
+        int total = getEstimatedCapacity();
+        int used = getEntryCount();
+        return total > 0 ? (used * 100 / total) : 0;
+    }
+    
+    // Private helper methods
+    
+    private void validateWrite(String key, byte[] value) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("Key cannot be null or empty");
+        }
+        
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+    }
+    
+    /**
+     * Region whose prefix the key starts with; the catch-all region matches every key
+     */
+    private StorageRegion regionFor(String key) {
+        for (StorageRegion region : regions) {
+            if (region.matches(key)) {
+                return region;
+            }
+        }
+        throw new IllegalStateException("No namespace for key: " + key);
+    }
+    
+    private void checkPatchOffset(int offset, int size) {
+        if (offset < 0 || offset > size) {
+            throw new IllegalArgumentException("Patch offset " + offset + " is outside the value (" + size + " bytes)");
+        }
+    }
+    
+    private byte[] readValue(StorageRegion region, DataAddress address) throws IOException {
+        AreaLayout layout = region.getLayout();
+        List<Material> blocks = new ArrayList<>(address.getBlockCount());
+        for (Extent extent : address.getExtents()) {
+            readBlocks(layout, layout.toOffset(extent.getStart()), extent.getLength(), blocks);
+        }
+        return encoder.decodeFromBlocks(blocks, address.isCompressed());
+    }
+    
+    /**
+     * Place symbols after the last extent, extending it in place when the blocks are free
+     */
+    private List<Extent> appendBlocks(StorageRegion region, DataAddress address, List<Material> symbols)
+            throws IOException {
+        AreaLayout layout = region.getLayout();
+        List<Extent> extents = new ArrayList<>(address.getExtents());
+        Extent last = address.getLastExtent();
+        long tail = layout.toOffset(last.getStart()) + last.getLength();
+        
+        if (claimTail(region, address, tail, symbols.size())) {
+            writeBlocks(layout, tail, symbols);
+            extents.set(extents.size() - 1, new Extent(last.getStart(), last.getLength() + symbols.size()));
+        } else {
+            long start = findAvailableSpace(region, symbols.size());
+            if (start < 0) {
+                throw new IOException("No available space in namespace " + region.getName() + "!");
+            }
+            writeBlocks(layout, start, symbols);
+            extents.add(new Extent(layout.toPosition(start), symbols.size()));
+        }
+        return extents;
+    }
+    
+    /**
+     * Overwrite symbols from the given block offset, only placing blocks that differ
+     */
+    private int patchBlocks(StorageRegion region, DataAddress address, int from, List<Material> symbols) {
+        AreaLayout layout = region.getLayout();
+        int[] changed = new int[1];
+        int i = 0;
+        int extentStart = 0;
+        
+        for (Extent extent : address.getExtents()) {
+            int extentEnd = extentStart + extent.getLength();
+            
+            if (i < symbols.size() && from + i < extentEnd) {
+                int local = from + i - extentStart;
+                int count = Math.min(symbols.size() - i, extent.getLength() - local);
+                int base = i;
+                
+                forEachBlock(layout, layout.toOffset(extent.getStart()) + local, count,
+                    (block, index) -> {
+                        Material symbol = symbols.get(base + index);
+                        if (block.getType() != symbol) {
+                            block.setType(symbol, false);
+                            changed[0]++;
+                        }
+                        return true;
+                    });
+                i += count;
+            }
+            extentStart = extentEnd;
+        }
+        return changed[0];
+    }
+    
+    /**
+     * Copy of the value with bytes written at the offset, growing it if they run past the end
+     */
+    private static byte[] applyPatch(byte[] current, int offset, byte[] bytes) {
+        byte[] updated = Arrays.copyOf(current, Math.max(current.length, offset + bytes.length));
+        System.arraycopy(bytes, 0, updated, offset, bytes.length);
+        return updated;
+    }
+    
+    /**
+     * Publish a partial update. If the full new value is known (from the cache) it stays cached
+     * and is fingerprinted, otherwise the fingerprint becomes unknown until the next full write.
+     */
+    private long commitMutation(StorageRegion region, String key, DataAddress old, List<Extent> extents, ChangeEvent.Operation operation,
+                                byte[] updated) {
+        long version = commitSequence.incrementAndGet();
+        int blockCount = 0;
+        for (Extent extent : extents) {
+            blockCount += extent.getLength();
+        }
+        
+        long fingerprint = updated != null ? Fingerprint.of(updated) : Fingerprint.UNKNOWN;
+        DataAddress address = new DataAddress(old.getChunkX(), old.getChunkZ(), extents, version, false,
+            fingerprint, blockCount / 2);
+        region.getIndex().put(key, address);
+        region.recordWrite();
+        invalidateLoad(key);
+        
+        if (updated != null) {
+            updateCache(region, key, new DataEntry(key, updated, address.getBlockPosition(), version));
+        } else {
+            invalidateCache(region, key);
+        }
+        
+        fireChange(new ChangeEvent(key, operation, version, null));
+        return version;
+    }
+    
+    private EncodedValue encode(byte[] value, boolean compress) throws IOException {
+        return new EncodedValue(value, encoder.encodeToBlocks(value, compress), compress, Fingerprint.of(value));
+    }
+    
+    private long skipUnchanged(String key, DataAddress existing) {
+        if (config.logOperations()) {
+            plugin.getLogger().info("Skipping unchanged entry: " + key);
+        }
+        return existing.getVersion();
+    }
+    
+    /**
+     * Place an encoded value and publish it. The caller holds the key's stripe lock.
+     */
+    private long writeEntry(StorageRegion region, String key, EncodedValue encoded) throws IOException {
+        AreaLayout layout = region.getLayout();
+        CompactIndex index = region.getIndex();
+        byte[] value = encoded.getValue();
+        List<Material> blocks = encoded.getBlocks();
+        int blocksNeeded = blocks.size();
+        
+        if (config.logOperations()) {
+            plugin.getLogger().info("Writing entry: " + key + " (" + value.length + " bytes, " + blocksNeeded + " blocks)");
+        }
+        
+        // Overwrite the existing allocation when the new value fits
+        DataAddress existing = index.get(key);
+        List<Extent> extents = existing != null ? overwriteInPlace(region, existing, blocks) : null;
+        DataAddress replaced = null;
+        
+        if (extents == null) {
+            // Doesn't fit - place the value somewhere new first. The old entry stays readable
+            // until the new one is published, and stays intact if there is no space.
+            replaced = existing;
+            long start = findAvailableSpace(region, blocksNeeded);
+            if (start < 0) {
+                throw new IOException("No available space in namespace " + region.getName() + "!");
+            }
+            
+            writeBlocks(layout, start, blocks);
+            extents = Collections.singletonList(new Extent(layout.toPosition(start), blocksNeeded));
+        }
+        
+        // Update index
+        long version = commitSequence.incrementAndGet();
+        BlockPosition startPos = extents.get(0).getStart();
+        int chunkX = startPos.getX() >> 4;
+        int chunkZ = startPos.getZ() >> 4;
+        DataAddress address = new DataAddress(chunkX, chunkZ, extents, version, encoded.isCompressed(),
+            encoded.getFingerprint(), value.length);
+        publish(region, key, address);
+        region.recordWrite();
+        invalidateLoad(key);
+        
+        // Update cache
+        DataEntry entry = new DataEntry(key, value, startPos, version);
+        updateCache(region, key, entry);
+        
+        // Free the relocated entry's old blocks now that nothing points at them
+        if (replaced != null) {
+            for (Extent extent : replaced.getExtents()) {
+                clearBlocks(region, layout.toOffset(extent.getStart()), extent.getLength());
+            }
+        }
+        
+        if (config.logOperations()) {
+            plugin.getLogger().info("  Written at: " + startPos);
+        }
+        
+        fireChange(new ChangeEvent(key, ChangeEvent.Operation.WRITE, version, value));
+        return version;
+    }
+    
+    /**
+     * Reuse an entry's blocks for a new value. Only blocks whose symbol changes are placed,
+     * and any unused tail is freed. A larger value is accepted only if the last extent can
+     * grow in place. Returns the new extents, or null if the value has to be relocated.
+     */
+    private List<Extent> overwriteInPlace(StorageRegion region, DataAddress existing, List<Material> blocks) {
+        AreaLayout layout = region.getLayout();
+        int capacity = existing.getBlockCount();
+        
+        if (blocks.size() > capacity) {
+            Extent last = existing.getLastExtent();
+            long tail = layout.toOffset(last.getStart()) + last.getLength();
+            if (!claimTail(region, existing, tail, blocks.size() - capacity)) {
+                return null;
+            }
+            
+            int changed = patchBlocks(region, existing, 0, blocks.subList(0, capacity));
+            writeBlocks(layout, tail, blocks.subList(capacity, blocks.size()));
+            logInPlace(changed, blocks.size());
+            
+            List<Extent> extents = new ArrayList<>(existing.getExtents());
+            extents.set(extents.size() - 1, new Extent(last.getStart(), last.getLength() + blocks.size() - capacity));
+            return extents;
+        }
+        
+        int changed = patchBlocks(region, existing, 0, blocks);
+        logInPlace(changed, blocks.size());
+        return trimExtents(region, existing, blocks.size());
+    }
+    
+    /**
+     * Keep the first length blocks of an entry and clear the rest
+     */
+    private List<Extent> trimExtents(StorageRegion region, DataAddress address, int length) {
+        AreaLayout layout = region.getLayout();
+        List<Extent> kept = new ArrayList<>();
+        int remaining = length;
+        
+        for (Extent extent : address.getExtents()) {
+            int keep = Math.min(remaining, extent.getLength());
+            if (keep > 0) {
+                kept.add(new Extent(extent.getStart(), keep));
+            }
+            if (keep < extent.getLength()) {
+                clearBlocks(region, layout.toOffset(extent.getStart()) + keep, extent.getLength() - keep);
+            }
+            remaining -= keep;
+        }
+        
+        if (kept.isEmpty()) {
+            kept.add(new Extent(address.getBlockPosition(), 0));
+        }
+        return kept;
+    }
+    
+    private void logInPlace(int changed, int total) {
+        if (config.logOperations()) {
+            plugin.getLogger().info("  Overwritten in place: " + changed + "/" + total + " blocks changed");
+        }
+    }
+    
+    private void removeEntry(StorageRegion region, String key, DataAddress address) {
+        // Clear blocks (set to AIR)
+        for (Extent extent : address.getExtents()) {
+            clearBlocks(region, region.getLayout().toOffset(extent.getStart()), extent.getLength());
+        }
+        
+        // Remove from index and cache
+        KeyFilter keyFilter = region.getKeyFilter();
+        synchronized (keyFilter) {
+            region.getIndex().remove(key);
+            keyFilter.remove(key);
+        }
+        invalidateLoad(key);
+        invalidateCache(region, key);
+    }
+    
+    private void fireChange(ChangeEvent event) {
+        for (ChangeListener listener : changeListeners) {
+            try {
+                listener.onChange(event);
+            } catch (Exception e) {
+                plugin.getLogger().warning("Change listener failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Move an entry into the lowest free run below it, or into one contiguous run if it is
+     * fragmented. The blocks are copied first, then the index entry is swapped, then the old
+     * blocks are freed. Skips entries changed since the compactor planned the move.
+     * Returns the number of blocks moved, 0 if the entry was left in place.
+     */
+    int relocate(String key, long expectedVersion) {
+        ReentrantLock lock = keyLocks.lock(key);
+        try {
+            return relocateLocked(key, expectedVersion);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private int relocateLocked(String key, long expectedVersion) {
+        StorageRegion region = regionFor(key);
+        AreaLayout layout = region.getLayout();
+        DataAddress address = region.getIndex().get(key);
+        if (address == null || address.getVersion() != expectedVersion || address.getBlockCount() == 0) {
+            return 0;
+        }
+        
+        int length = address.getBlockCount();
+        boolean fragmented = address.getExtents().size() > 1;
+        if (!fragmented && region.getSlabAllocator().isSlab(layout.toOffset(address.getBlockPosition()))) {
+            // Slab slots are reused in place and don't leave gaps to close
+            return 0;
+        }
+        long limit = fragmented ? layout.getTotalBlocks() : layout.toOffset(address.getBlockPosition());
+        long target = region.getAllocator().allocateBelow(length, limit, ownedColumns(layout));
+        if (target < 0) {
+            return 0;
+        }
+        if (!isSpaceAvailable(layout, target, length)) {
+            releaseAirBlocks(region, target, length);
+            return 0;
+        }
+        
+        // Copy, then swap the index entry, then free the old blocks
+        List<Material> blocks = new ArrayList<>(length);
+        for (Extent extent : address.getExtents()) {
+            readBlocks(layout, layout.toOffset(extent.getStart()), extent.getLength(), blocks);
+        }
+        writeBlocks(layout, target, blocks);
+        
+        BlockPosition start = layout.toPosition(target);
+        region.getIndex().put(key, new DataAddress(start.getX() >> 4, start.getZ() >> 4, start, length, address.getVersion(),
+            address.isCompressed(), address.getFingerprint(), address.getValueSize()));
+        
+        for (Extent extent : address.getExtents()) {
+            clearBlocks(region, layout.toOffset(extent.getStart()), extent.getLength());
+        }
+        return length;
+    }
+    
+    /**
+     * Place a run of blocks, returning its linear offset or -1 if the area has no free run that
+     * large. Small entries take a slab slot, the rest use the allocator's section-local policy.
+     */
+    private long findAvailableSpace(StorageRegion region, int blocksNeeded) {
+        AreaLayout layout = region.getLayout();
+        IntPredicate columns = ownedColumns(layout);
+        IntPredicate preferred = preferredColumns(columns);
+        long slot = region.getSlabAllocator().allocate(blocksNeeded, preferred, columns);
+        if (slot >= 0) {
+            if (isSpaceAvailable(layout, slot, blocksNeeded)) {
+                return slot;
+            }
+            // Foreign blocks in the slot - leave it allocated so it isn't handed out again
+        }
+        
+        for (int attempt = 0; attempt < MAX_PLACEMENT_ATTEMPTS; attempt++) {
+            long offset = preferred != null ? region.getAllocator().allocate(blocksNeeded, preferred) : -1;
+            if (offset < 0) {
+                offset = region.getAllocator().allocate(blocksNeeded, columns);
+            }
+            if (offset < 0) {
+                plugin.getLogger().warning("No free run of " + blocksNeeded + " blocks left in namespace " + region.getName());
+                scheduler.runGlobal(this::checkGrowth);
+                return -1;
+            }
+            
+            if (isSpaceAvailable(layout, offset, blocksNeeded)) {
+                if (config.logOperations()) {
+                    plugin.getLogger().info("  Placed " + blocksNeeded + " blocks at " + layout.toPosition(offset));
+                }
+                return offset;
+            }
+            
+            // Blocks the database didn't place are in the way - keep them reserved and retry
+            releaseAirBlocks(region, offset, blocksNeeded);
+        }
+        
+        plugin.getLogger().warning("Could not place " + blocksNeeded + " blocks after " + MAX_PLACEMENT_ATTEMPTS + " attempts");
+        return -1;
+    }
+    
+    /**
+     * Claim count blocks right after an entry's last extent. An entry in a slab slot can grow
+     * into the rest of its slot, but never past it.
+     */
+    private boolean claimTail(StorageRegion region, DataAddress address, long tail, int count) {
+        SlabAllocator slabs = region.getSlabAllocator();
+        long start = region.getLayout().toOffset(address.getBlockPosition());
+        if (address.getExtents().size() == 1 && slabs.isSlab(start)) {
+            return address.getBlockCount() > 0 && address.getBlockCount() + count <= slabs.getSlotSize(start);
+        }
+        return reserveAt(region, tail, count);
+    }
+    
+    /**
+     * Reserve a specific run, e.g. to grow an entry in place
+     */
+    private boolean reserveAt(StorageRegion region, long start, int count) {
+        AreaLayout layout = region.getLayout();
+        IntPredicate columns = ownedColumns(layout);
+        if (columns != null && count > 0) {
+            // Growing into a chunk another region thread owns isn't allowed
+            for (long column = layout.getColumnIndex(start); column <= layout.getColumnIndex(start + count - 1); column++) {
+                if (!columns.test((int) column)) {
+                    return false;
+                }
+            }
+        }
+        if (!region.getAllocator().reserve(start, count)) {
+            return false;
+        }
+        if (isSpaceAvailable(region.getLayout(), start, count)) {
+            return true;
+        }
+        releaseAirBlocks(region, start, count);
+        return false;
+    }
+    
+    private void releaseAirBlocks(StorageRegion region, long start, int count) {
+        forEachBlock(region.getLayout(), start, count, (block, i) -> {
+            if (block.getType() == Material.AIR) {
+                region.getAllocator().release(start + i, 1);
+            }
+            return true;
+        });
+    }
+    
+    /**
+     * Visit blocks of a run, marking the chunk columns it covers as in use
+     */
+    private boolean forEachBlock(AreaLayout layout, long start, int count, AreaLayout.BlockVisitor visitor) {
+        if (count > 0) {
+            for (int column = layout.getColumnIndex(start); column <= layout.getColumnIndex(start + count - 1); column++) {
+                chunkManager.touch(column);
+            }
+        }
+        return layout.forEachBlock(chunkManager.getWorld(), start, count, visitor);
+    }
+    
+    /**
+     * Start loading every chunk column an entry covers that isn't resident
+     */
+    private CompletableFuture<Void> ensureLoaded(AreaLayout layout, DataAddress address) {
+        List<CompletableFuture<Void>> loads = null;
+        for (Extent extent : address.getExtents()) {
+            long start = layout.toOffset(extent.getStart());
+            for (int column = layout.getColumnIndex(start); column <= layout.getColumnIndex(start + extent.getLength() - 1); column++) {
+                if (!chunkManager.isResident(column)) {
+                    if (loads == null) {
+                        loads = new ArrayList<>();
+                    }
+                    loads.add(chunkManager.ensureLoaded(column));
+                }
+            }
+        }
+        return loads == null ? CompletableFuture.completedFuture(null)
+            : CompletableFuture.allOf(loads.toArray(new CompletableFuture[0]));
+    }
+    
+    private boolean isSpaceAvailable(AreaLayout layout, long start, int count) {
+        return forEachBlock(layout, start, count,
+            (block, i) -> block.getType() == Material.AIR);
+    }
+    
+    /**
+     * Data blocks are placed without physics, so neighbours are not updated and nothing
+     * reacts to the write
+     */
+    private void writeBlocks(AreaLayout layout, long start, List<Material> materials) {
+        forEachBlock(layout, start, materials.size(), (block, i) -> {
+            block.setType(materials.get(i), false);
+            return true;
+        });
+    }
+    
+    private void readBlocks(AreaLayout layout, long start, int count, List<Material> into) {
+        forEachBlock(layout, start, count, (block, i) -> {
+            into.add(block.getType());
+            return true;
+        });
+    }
+    
+    private void clearBlocks(StorageRegion region, long start, int count) {
+        forEachBlock(region.getLayout(), start, count, (block, i) -> {
+            block.setType(Material.AIR, false);
+            return true;
+        });
+        release(region, start, count);
+    }
+    
+    /**
+     * Free a run, returning a whole slot to its slab or the blocks to the allocator
+     */
+    private void release(StorageRegion region, long start, int count) {
+        if (count > 0 && !region.getSlabAllocator().release(start, count)) {
+            region.getAllocator().release(start, count);
+        }
+    }
+    
+    private CompletableFuture<DataEntry> loadShared(StorageRegion region, String key) {
+        CompletableFuture<DataEntry> load = new CompletableFuture<>();
+        CompletableFuture<DataEntry> existing = inFlightLoads.putIfAbsent(key, load);
+        if (existing != null) {
+            sharedLoads.incrementAndGet();
+            return existing;
+        }
+        
+        Runnable task = () -> {
+            try {
+                load.complete(loadFromBlocks(region, key));
+            } catch (Exception e) {
+                load.completeExceptionally(e);
+            } finally {
+                inFlightLoads.remove(key, load);
+            }
+        };
+        
+        DataAddress address = region.getIndex().get(key);
+        if (address == null) {
+            task.run();
+        } else {
+            // After warmup, and once any unloaded chunks of the entry are back in. If warmup or a
+            // chunk load fails the task never runs, so fail the load here and detach it, or every
+            // later miss on the key would join a future that never completes.
+            ready.thenCompose(v -> ensureLoaded(region.getLayout(), address))
+                .thenRun(() -> scheduler.execute(chunkManager.getWorld(), address.getChunkX(), address.getChunkZ(), task))
+                .whenComplete((v, error) -> {
+                    if (error != null) {
+                        load.completeExceptionally(error);
+                        inFlightLoads.remove(key, load);
+                    }
+                });
+        }
+        return load;
+    }
+    
+    /**
+     * Read an entry's blocks and cache the value, null if the key does not exist.
+     * The entry carries the version of the index entry its blocks were read from.
+     */
+    private DataEntry loadFromBlocks(StorageRegion region, String key) throws IOException {
+        // Get address from the region's index
+        DataAddress address = region.getIndex().get(key);
+        if (address == null) {
+            return null;
+        }
+        
+        if (config.logOperations()) {
+            plugin.getLogger().info("Reading entry: " + key);
+        }
+        
+        // Read and decode blocks
+        DataEntry entry = new DataEntry(key, readValue(region, address), address.getBlockPosition(), address.getVersion());
+        
+        // Only cache the value if no write replaced the entry while it was being read
+        DataAddress current = region.getIndex().get(key);
+        if (current != null && current.getVersion() == address.getVersion()) {
+            updateCache(region, key, entry);
+        }
+        
+        return entry;
+    }
+    
+    /**
+     * Put an index entry, adding new keys to the membership filter before they become visible.
+     * Filter updates and index changes are made together under the filter's monitor so each key
+     * is counted once. A filter that is over capacity is resized after the monitor is released.
+     */
+    private void publish(StorageRegion region, String key, DataAddress address) {
+        CompactIndex index = region.getIndex();
+        KeyFilter keyFilter = region.getKeyFilter();
+        boolean full = false;
+        synchronized (keyFilter) {
+            if (!index.containsKey(key)) {
+                full = !keyFilter.add(key);
+            }
+            index.put(key, address);
+        }
+        
+        if (full && keyFilter.resize(index::keys) && config.logPerformance()) {
+            plugin.getLogger().info("Key filter for " + region.getName() + " resized to " + keyFilter.getCapacity() + " keys");
+        }
+    }
+    
+    /**
+     * Detach any in-flight load so later readers don't join a load of the old value
+     */
+    private void invalidateLoad(String key) {
+        inFlightLoads.remove(key);
+    }
+    
+    // With the off-heap tier enabled it is the only value cache; the heap keeps just the keys,
+    // versions and slot positions, and the region caches stay empty
+    
+    private void updateCache(StorageRegion region, String key, DataEntry entry) {
+        if (offHeapCache != null) {
+            offHeapCache.put(key, entry);
+        } else {
+            region.getCache().put(key, entry);
+        }
+    }
+    
+    private DataEntry getFromCache(StorageRegion region, String key) {
+        return offHeapCache != null ? offHeapCache.get(key) : region.getCache().get(key);
+    }
+    
+    private boolean isExpiringSoon(StorageRegion region, String key) {
+        return offHeapCache != null ? offHeapCache.isExpiringSoon(key, refreshAheadMillis)
+            : region.getCache().isExpiringSoon(key, refreshAheadMillis);
+    }
+    
+    private void invalidateCache(StorageRegion region, String key) {
+        if (offHeapCache != null) {
+            offHeapCache.invalidate(key);
+        } else {
+            region.getCache().invalidate(key);
+        }
+    }
+    
+    private void clearCache() {
+        for (StorageRegion region : regions) {
+            region.getCache().clear();
+        }
+        if (offHeapCache != null) {
+            offHeapCache.clear();
         }
     }
     
@@ -499,7 +1716,7 @@ public class BlockDatabase {
         // For now, start fresh
         // In a full implementation, you'd scan blocks and rebuild the index
         
-        plugin.getLogger().info("Index rebuilt: " + index.size() + " entries found");
+        plugin.getLogger().info("Index rebuilt: " + getEntryCount() + " entries found");
     }
 }
 
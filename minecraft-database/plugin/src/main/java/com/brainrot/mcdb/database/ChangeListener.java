@@ -0,0 +1,12 @@
+package com.brainrot.mcdb.database;
+
+import com.brainrot.mcdb.models.ChangeEvent;
+
+/**
+ * Receives committed changes from the block database.
+ * Called while the database is locked, so implementations must only hand the event off.
+ */
+public interface ChangeListener {
+    
+    void onChange(ChangeEvent event);
+}
@@ -3,32 +3,112 @@ package com.brainrot.mcdb.database;
 import com.brainrot.mcdb.MinecraftDBPlugin;
 import com.brainrot.mcdb.models.BlockPosition;
 import com.brainrot.mcdb.utils.ConfigManager;
+import com.brainrot.mcdb.utils.TaskScheduler;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockGrowEvent;
+import org.bukkit.event.block.BlockPhysicsEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
+import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Keeps the database chunks that are in use loaded, and protects the area.
+ *
+ * Chunks are loaded asynchronously at startup, a bounded number at a time, and held with a
+ * plugin chunk ticket. Until every chunk is in, the database is warming: block work is queued
+ * behind {@link #whenReady()}.
+ *
+ * After that, residency follows demand. Every block access stamps its chunk column; columns
+ * left idle for longer than the idle timeout lose their ticket and may unload, and are loaded
+ * again asynchronously (or on access) when an entry in them is needed. Reads are mostly served
+ * from the index and cache, so resident memory tracks the working set rather than capacity.
+ */
 public class ChunkManager implements Listener {
     
+    // How often idle columns are looked for
+    private static final long SWEEP_INTERVAL_TICKS = 20L * 15;
+    
+    // How long a player's bypass permission check is reused
+    private static final long BYPASS_CACHE_MILLIS = 5000;
+    
+    private static final class BypassState {
+        final boolean bypass;
+        final long expiresAt;
+        
+        BypassState(boolean bypass, long expiresAt) {
+            this.bypass = bypass;
+            this.expiresAt = expiresAt;
+        }
+    }
+    
     private final MinecraftDBPlugin plugin;
     private final ConfigManager config;
     private World world;
-    private final List<Chunk> databaseChunks;
+    
+    // Last access time per chunk column, 0 when the column holds no ticket
+    private final AtomicLongArray lastAccess;
+    private final AtomicInteger residentChunks;
+    private final AtomicLong demandLoads;
+    private final AtomicLong idleUnloads;
+    private final long idleMillis;
+    private TaskScheduler.Task sweeper;
+    
+    // Protected boxes, rebuilt when the area changes; listeners read it without locking
+    private volatile ProtectionIndex protection;
+    private final Map<UUID, BypassState> bypassCache;
+    
+    // Completes once every database chunk is loaded and ticketed
+    private final CompletableFuture<Void> ready;
+    private final AtomicInteger chunksFailed;
+    private volatile long warmupStartedAt;
+    private volatile long warmupMillis;
+    
+    // Area bounds and offset mapping, computed once instead of re-reading the config per call.
+    // Replaced when the area grows.
+    private volatile AreaLayout layout;
     
     public ChunkManager(MinecraftDBPlugin plugin) {
         this.plugin = plugin;
         this.config = plugin.getConfigManager();
-        this.databaseChunks = new ArrayList<>();
+        this.ready = new CompletableFuture<>();
+        this.chunksFailed = new AtomicInteger();
+        this.layout = new AreaLayout(config.getChunkStartX(), config.getChunkStartZ(),
+            config.getChunkEndX(), config.getChunkEndZ(), config.getMinY(), config.getMaxY());
+        // Sized for the largest area growth may reach, so it never has to be resized
+        int maxRows = Math.max(config.getChunkEndZ(), config.getGrowthMaxChunkZ()) - config.getChunkStartZ() + 1;
+        this.lastAccess = new AtomicLongArray((config.getChunkEndX() - config.getChunkStartX() + 1) * maxRows);
+        this.residentChunks = new AtomicInteger();
+        this.demandLoads = new AtomicLong();
+        this.idleUnloads = new AtomicLong();
+        this.idleMillis = config.getChunkIdleSeconds() * 1000L;
+        this.protection = ProtectionIndex.empty();
+        this.bypassCache = new ConcurrentHashMap<>();
     }
     
     public void initialize() {
@@ -37,155 +117,423 @@ public class ChunkManager implements Listener {
         if (world == null) {
             throw new RuntimeException("World '" + config.getWorldName() + "' not found!");
         }
+        protection = new ProtectionIndex(world, List.of(layout));
         
-        // Load and force-load database chunks
-        int startX = config.getChunkStartX();
-        int startZ = config.getChunkStartZ();
-        int endX = config.getChunkEndX();
-        int endZ = config.getChunkEndZ();
+        plugin.getLogger().info("Loading chunks from (" + config.getChunkStartX() + "," + config.getChunkStartZ()
+            + ") to (" + config.getChunkEndX() + "," + config.getChunkEndZ() + ")");
         
-        plugin.getLogger().info("Loading chunks from (" + startX + "," + startZ + ") to (" + endX + "," + endZ + ")");
+        warmupStartedAt = System.currentTimeMillis();
+        loadColumns(0, layout.getColumnCount()).thenRun(() -> {
+            warmupMillis = System.currentTimeMillis() - warmupStartedAt;
+            plugin.getLogger().info("Loaded " + residentChunks.get() + " database chunks in " + warmupMillis + "ms"
+                + (chunksFailed.get() > 0 ? " (" + chunksFailed.get() + " failed)" : ""));
+            ready.complete(null);
+        });
         
-        for (int x = startX; x <= endX; x++) {
-            for (int z = startZ; z <= endZ; z++) {
-                Chunk chunk = world.getChunkAt(x, z);
-                chunk.load(true);
-                chunk.setForceLoaded(true);
-                databaseChunks.add(chunk);
-            }
+        // Release columns nobody has used for a while (0 keeps the whole area resident)
+        if (idleMillis > 0) {
+            sweeper = plugin.getTaskScheduler().runGlobalTimer(this::sweepIdle, SWEEP_INTERVAL_TICKS, SWEEP_INTERVAL_TICKS);
         }
         
-        plugin.getLogger().info("Loaded " + databaseChunks.size() + " database chunks");
-        
         // Register protection events
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
     }
     
+    /**
+     * Load chunk columns [from, to) asynchronously and ticket them, for columns past the current
+     * area too (see {@link #setLayout}). Completes when every load has finished.
+     */
+    public CompletableFuture<Void> loadColumns(int from, int to) {
+        Queue<Integer> queue = new ConcurrentLinkedQueue<>();
+        for (int column = from; column < to; column++) {
+            queue.add(column);
+        }
+        int total = queue.size();
+        if (total == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(total);
+        
+        // Keep a bounded number of async loads in flight; each finished load starts the next
+        int concurrency = Math.min(config.getChunkLoadConcurrency(), total);
+        for (int i = 0; i < concurrency; i++) {
+            loadNext(queue, () -> {
+                int left = pending.decrementAndGet();
+                if (left == 0) {
+                    done.complete(null);
+                } else if ((total - left) % Math.max(1, total / 10) == 0) {
+                    plugin.getLogger().info("Loading database chunks: " + (total - left) + "/" + total);
+                }
+            });
+        }
+        return done;
+    }
+    
+    private void loadNext(Queue<Integer> queue, Runnable onLoaded) {
+        Integer next;
+        while ((next = queue.poll()) != null) {
+            int column = next;
+            int chunkX = layout.getColumnChunkX(column);
+            int chunkZ = layout.getColumnChunkZ(column);
+            
+            // Completes on the thread owning the chunk. Chunks that are already loaded complete
+            // at once and are handled in this loop, so a loaded area doesn't recurse per chunk.
+            CompletableFuture<Chunk> load = world.getChunkAtAsync(chunkX, chunkZ);
+            if (!load.isDone()) {
+                load.whenComplete((chunk, error) -> {
+                    onChunkLoaded(column, chunk, error);
+                    onLoaded.run();
+                    loadNext(queue, onLoaded);
+                });
+                return;
+            }
+            load.whenComplete((chunk, error) -> {
+                onChunkLoaded(column, chunk, error);
+                onLoaded.run();
+            });
+        }
+    }
+    
+    private void onChunkLoaded(int column, Chunk chunk, Throwable error) {
+        if (error == null && chunk != null) {
+            if (chunk.isForceLoaded()) {
+                // Left over from versions that force-loaded the area; the ticket replaces it
+                chunk.setForceLoaded(false);
+            }
+            touch(column);
+        } else {
+            chunksFailed.incrementAndGet();
+            plugin.getLogger().warning("Failed to load database chunk " + layout.getColumnChunkX(column) + ","
+                + layout.getColumnChunkZ(column) + ": " + (error != null ? error.getMessage() : "no chunk"));
+        }
+    }
+    
+    /**
+     * Switch to a grown layout. Only rows appended along z are supported, which keeps every
+     * existing column index (and block offset) unchanged.
+     */
+    public void setLayout(AreaLayout grown) {
+        if (grown.getColumnCount() > lastAccess.length()) {
+            throw new IllegalArgumentException("Area can't grow past " + lastAccess.length() + " chunks");
+        }
+        this.layout = grown;
+        this.protection = new ProtectionIndex(world, List.of(grown));
+    }
+    
+    /**
+     * Most chunk columns the area may grow to
+     */
+    public int getMaxColumnCount() {
+        return lastAccess.length();
+    }
+    
+    /**
+     * Mark a chunk column as used now, taking a ticket if it has none. Must run on the thread
+     * owning the chunk; loads it synchronously if it was unloaded.
+     */
+    public void touch(int column) {
+        long previous = lastAccess.getAndSet(column, System.currentTimeMillis());
+        if (previous == 0) {
+            world.addPluginChunkTicket(layout.getColumnChunkX(column), layout.getColumnChunkZ(column), plugin);
+            residentChunks.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Start loading a column that isn't resident, from any thread. Completes once the chunk is
+     * loaded; the ticket is taken by the block access that follows.
+     */
+    public CompletableFuture<Void> ensureLoaded(int column) {
+        if (lastAccess.get(column) != 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        demandLoads.incrementAndGet();
+        return world.getChunkAtAsync(layout.getColumnChunkX(column), layout.getColumnChunkZ(column))
+            .thenApply(chunk -> null);
+    }
+    
+    /**
+     * Whether idle chunks are released, i.e. residency follows demand
+     */
+    public boolean unloadsIdleChunks() {
+        return idleMillis > 0;
+    }
+    
+    /**
+     * Whether the column currently holds a ticket
+     */
+    public boolean isResident(int column) {
+        return lastAccess.get(column) != 0;
+    }
+    
+    private void sweepIdle() {
+        long now = System.currentTimeMillis();
+        TaskScheduler scheduler = plugin.getTaskScheduler();
+        for (int column = 0; column < lastAccess.length(); column++) {
+            long seen = lastAccess.get(column);
+            if (seen == 0 || now - seen < idleMillis) {
+                continue;
+            }
+            
+            // Drop the ticket on the owning thread, unless the column was used in the meantime
+            int idle = column;
+            int chunkX = layout.getColumnChunkX(column);
+            int chunkZ = layout.getColumnChunkZ(column);
+            scheduler.execute(world, chunkX, chunkZ, () -> {
+                if (lastAccess.compareAndSet(idle, seen, 0)) {
+                    world.removePluginChunkTicket(chunkX, chunkZ, plugin);
+                    residentChunks.decrementAndGet();
+                    idleUnloads.incrementAndGet();
+                }
+            });
+        }
+    }
+    
     public void shutdown() {
-        // Unload chunks (but keep them force-loaded for next startup)
-        for (Chunk chunk : databaseChunks) {
-            chunk.setForceLoaded(true); // Keep force-loaded
+        if (sweeper != null) {
+            sweeper.cancel();
+            sweeper = null;
+        }
+        
+        // Release the tickets so the chunks can unload
+        if (world != null) {
+            world.removePluginChunkTickets(plugin);
         }
-        databaseChunks.clear();
+        for (int column = 0; column < lastAccess.length(); column++) {
+            lastAccess.set(column, 0);
+        }
+        residentChunks.set(0);
         
-        plugin.getLogger().info("Database chunks shut down (kept force-loaded)");
+        plugin.getLogger().info("Database chunks shut down (tickets released)");
+    }
+    
+    /**
+     * Completes once all database chunks are loaded
+     */
+    public CompletableFuture<Void> whenReady() {
+        return ready;
+    }
+    
+    /**
+     * False while the database is warming up
+     */
+    public boolean isReady() {
+        return ready.isDone();
+    }
+    
+    public int getTotalChunkCount() {
+        return layout.getColumnCount();
+    }
+    
+    /**
+     * Time it took to load every chunk at startup, 0 while still warming
+     */
+    public long getWarmupMillis() {
+        return warmupMillis;
     }
     
     public World getWorld() {
         return world;
     }
     
-    public List<Chunk> getDatabaseChunks() {
-        return new ArrayList<>(databaseChunks);
+    public AreaLayout getLayout() {
+        return layout;
     }
     
+    /**
+     * Chunks currently held resident by the database
+     */
     public int getLoadedChunkCount() {
-        return databaseChunks.size();
+        return residentChunks.get();
+    }
+    
+    /**
+     * Loads started because a non-resident chunk was needed
+     */
+    public long getDemandLoadCount() {
+        return demandLoads.get();
+    }
+    
+    /**
+     * Tickets released because a chunk column was idle
+     */
+    public long getIdleUnloadCount() {
+        return idleUnloads.get();
     }
     
     public boolean isInDatabaseArea(Location location) {
-        if (location.getWorld() != world) {
-            return false;
-        }
-        
-        int chunkX = location.getBlockX() >> 4;
-        int chunkZ = location.getBlockZ() >> 4;
-        
-        return chunkX >= config.getChunkStartX() && chunkX <= config.getChunkEndX() &&
-               chunkZ >= config.getChunkStartZ() && chunkZ <= config.getChunkEndZ() &&
-               location.getBlockY() >= config.getMinY() && location.getBlockY() <= config.getMaxY();
+        return protection.contains(location);
     }
     
     public boolean isInDatabaseArea(BlockPosition position) {
-        int chunkX = position.getX() >> 4;
-        int chunkZ = position.getZ() >> 4;
-        
-        return chunkX >= config.getChunkStartX() && chunkX <= config.getChunkEndX() &&
-               chunkZ >= config.getChunkStartZ() && chunkZ <= config.getChunkEndZ() &&
-               position.getY() >= config.getMinY() && position.getY() <= config.getMaxY();
+        return layout.contains(position);
     }
     
     public BlockPosition getStartPosition() {
-        int startX = config.getChunkStartX() * 16;
-        int startZ = config.getChunkStartZ() * 16;
-        int startY = config.getMinY();
-        return new BlockPosition(startX, startY, startZ);
+        return layout.getStart();
     }
     
     public BlockPosition getEndPosition() {
-        int endX = (config.getChunkEndX() + 1) * 16 - 1;
-        int endZ = (config.getChunkEndZ() + 1) * 16 - 1;
-        int endY = config.getMaxY();
-        return new BlockPosition(endX, endY, endZ);
+        return layout.getEnd();
     }
     
     public int getTotalBlocks() {
-        BlockPosition start = getStartPosition();
-        BlockPosition end = getEndPosition();
-        
-        int width = end.getX() - start.getX() + 1;
-        int height = end.getY() - start.getY() + 1;
-        int depth = end.getZ() - start.getZ() + 1;
-        
-        return width * height * depth;
+        return layout.getTotalBlocks();
     }
     
     // Protection Events
     
+    /**
+     * Whether the player may ignore the protection, cached for a few seconds per player
+     */
+    private boolean hasBypass(Player player) {
+        long now = System.currentTimeMillis();
+        BypassState state = bypassCache.get(player.getUniqueId());
+        if (state == null || now >= state.expiresAt) {
+            state = new BypassState(player.hasPermission("mcdb.bypass"), now + BYPASS_CACHE_MILLIS);
+            bypassCache.put(player.getUniqueId(), state);
+        }
+        return state.bypass;
+    }
+    
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onBlockBreak(BlockBreakEvent event) {
         if (!config.preventPlayerAccess()) return;
+        if (!protection.contains(event.getBlock())) return;
         
         Player player = event.getPlayer();
-        if (player.hasPermission("mcdb.bypass")) return;
+        if (hasBypass(player)) return;
         
-        if (isInDatabaseArea(event.getBlock().getLocation())) {
-            event.setCancelled(true);
-            player.sendMessage("§cYou cannot break blocks in the database area!");
-        }
+        event.setCancelled(true);
+        player.sendMessage("§cYou cannot break blocks in the database area!");
     }
     
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onBlockPlace(BlockPlaceEvent event) {
         if (!config.preventPlayerAccess()) return;
+        if (!protection.contains(event.getBlock())) return;
         
         Player player = event.getPlayer();
-        if (player.hasPermission("mcdb.bypass")) return;
+        if (hasBypass(player)) return;
         
-        if (isInDatabaseArea(event.getBlock().getLocation())) {
-            event.setCancelled(true);
-            player.sendMessage("§cYou cannot place blocks in the database area!");
-        }
+        event.setCancelled(true);
+        player.sendMessage("§cYou cannot place blocks in the database area!");
     }
     
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onExplode(EntityExplodeEvent event) {
         if (!config.preventExplosions()) return;
         
-        event.blockList().removeIf(block -> isInDatabaseArea(block.getLocation()));
+        // All blocks of one explosion are in the same world
+        List<Block> blocks = event.blockList();
+        ProtectionIndex index = protection;
+        if (blocks.isEmpty() || blocks.get(0).getWorld() != index.getWorld()) return;
+        
+        blocks.removeIf(block -> index.contains(block.getX(), block.getY(), block.getZ()));
     }
     
-    @EventHandler(priority = EventPriority.MONITOR)
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onPlayerMove(PlayerMoveEvent event) {
         if (!config.preventPlayerAccess()) return;
-        if (event.getTo() == null) return;
-        
-        Player player = event.getPlayer();
-        if (player.hasPermission("mcdb.bypass")) return;
         
         Location from = event.getFrom();
         Location to = event.getTo();
+        if (to == null) return;
+        
+        // Most move events only turn the head or move within the same block
+        if (from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY()
+                && from.getBlockZ() == to.getBlockZ()) return;
         
         // Check if player is entering database area
-        if (!isInDatabaseArea(from) && isInDatabaseArea(to)) {
-            // Teleport player away
-            int distance = config.getTeleportDistance();
-            Location newLoc = from.clone().add(from.getDirection().multiply(-distance));
+        ProtectionIndex index = protection;
+        if (index.contains(from) || !index.contains(to)) return;
+        
+        Player player = event.getPlayer();
+        if (hasBypass(player)) return;
+        
+        // Keep the player out, then push them back from the edge
+        event.setCancelled(true);
+        Location newLoc = from.clone().add(from.getDirection().multiply(-config.getTeleportDistance()));
+        
+        // The target may belong to another region on Folia, so its height is read on that thread
+        plugin.getTaskScheduler().execute(world, newLoc.getBlockX() >> 4, newLoc.getBlockZ() >> 4, () -> {
             newLoc.setY(world.getHighestBlockYAt(newLoc) + 1);
-            
-            player.teleport(newLoc);
-            player.sendMessage("§cYou cannot enter the database area!");
+            player.teleportAsync(newLoc);
+        });
+        player.sendMessage("§cYou cannot enter the database area!");
+    }
+    
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        bypassCache.remove(event.getPlayer().getUniqueId());
+    }
+    
+    // Tick Suppression
+    // Physics, fluids and block growth inside the area would change stored data and cost
+    // tick time. The checks run on every such event, so they only use the protection index.
+    
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void onBlockPhysics(BlockPhysicsEvent event) {
+        if (config.preventBlockUpdates() && protection.contains(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void onFluidFlow(BlockFromToEvent event) {
+        // Fluids flowing in from outside are stopped as well
+        if (config.preventBlockUpdates() && (protection.contains(event.getToBlock()) || protection.contains(event.getBlock()))) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void onBlockFade(BlockFadeEvent event) {
+        if (config.preventBlockUpdates() && protection.contains(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void onBlockForm(BlockFormEvent event) {
+        if (config.preventBlockUpdates() && protection.contains(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void onBlockSpread(BlockSpreadEvent event) {
+        if (config.preventBlockUpdates() && protection.contains(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void onBlockGrow(BlockGrowEvent event) {
+        if (config.preventBlockUpdates() && protection.contains(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void onLeavesDecay(LeavesDecayEvent event) {
+        if (config.preventBlockUpdates() && protection.contains(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void onCreatureSpawn(CreatureSpawnEvent event) {
+        if (!config.preventMobSpawning()) return;
+        
+        // Spawns by commands and plugins are deliberate
+        CreatureSpawnEvent.SpawnReason reason = event.getSpawnReason();
+        if (reason == CreatureSpawnEvent.SpawnReason.COMMAND || reason == CreatureSpawnEvent.SpawnReason.CUSTOM) return;
+        
+        if (protection.contains(event.getLocation())) {
+            event.setCancelled(true);
         }
     }
 }
-
@@ -0,0 +1,552 @@
+package com.brainrot.mcdb.database;
+
+import com.brainrot.mcdb.models.BlockPosition;
+import com.brainrot.mcdb.models.DataAddress;
+import com.brainrot.mcdb.models.Extent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Primary key index stored in primitive arrays instead of one map entry per key.
+ *
+ * Keys live as UTF-8 in an append-only byte arena, and each entry's metadata is a row across
+ * column arrays (arena offset, hash, packed address, version, fingerprint, value size).
+ * Lookups go through an open-addressing hash table of entry ids. Entry ids are also kept in
+ * key order, in blocks of bounded size, for prefix scans: an insert or remove shifts ids within
+ * one block rather than the whole order, so it stays cheap at millions of keys. Entries with a single extent pack their
+ * location into one long; fragmented entries keep their extent list in a small side map.
+ *
+ * DataAddress objects are only created on lookup, so the resident cost per key is roughly the
+ * key bytes plus ~60 bytes, independent of how many objects an address would otherwise hold.
+ */
+public class CompactIndex {
+    
+    // Hash table slot markers (live slots hold entry id + 1)
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+    
+    // Packed address: [63] extents in side map | [62] compressed | [61..40] length | [39..0] linear offset
+    private static final long OFFSET_MASK = (1L << 40) - 1;
+    private static final int LENGTH_SHIFT = 40;
+    private static final long LENGTH_MASK = (1L << 22) - 1;
+    private static final long COMPRESSED_BIT = 1L << 62;
+    private static final long OVERFLOW_BIT = 1L << 63;
+    
+    // Compact the arena once this much of it belongs to removed keys
+    private static final int ARENA_COMPACT_THRESHOLD = 64 * 1024;
+    
+    // Most ids per block of the key order; full blocks are split in half
+    private static final int SORTED_BLOCK_SIZE = 512;
+    
+    private static final class IdBlock {
+        final int[] ids = new int[SORTED_BLOCK_SIZE];
+        int size;
+    }
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Converts extent starts to and from linear block offsets
+    private final AreaLayout layout;
+    
+    private int[] table;
+    private int tableUsed;
+    
+    // Entry columns, indexed by entry id
+    private int[] keyOffsets;
+    private int[] keyLengths;
+    private int[] hashes;
+    private long[] addresses;
+    private long[] versions;
+    private long[] fingerprints;
+    private int[] valueSizes;
+    private int highWater;
+    private int liveCount;
+    
+    // Ids of removed entries, reused before growing the columns
+    private int[] freeIds;
+    private int freeCount;
+    
+    // Extent lists for entries that don't fit a single packed extent
+    private final Map<Integer, List<Extent>> overflow;
+    
+    private byte[] arena;
+    private int arenaUsed;
+    private int arenaDead;
+    
+    // Live entry ids in key order (unsigned UTF-8 byte order), no block is empty
+    private final List<IdBlock> sorted;
+    
+    public CompactIndex(AreaLayout layout) {
+        this.layout = layout;
+        this.overflow = new HashMap<>();
+        this.sorted = new ArrayList<>();
+        reset();
+    }
+    
+    /**
+     * Get the address for a key, null if it isn't indexed
+     */
+    public DataAddress get(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int slot = find(bytes, hash(bytes));
+            return slot < 0 ? null : toAddress(table[slot] - 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public boolean containsKey(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            return find(bytes, hash(bytes)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Insert or replace the address for a key
+     */
+    public void put(String key, DataAddress address) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes);
+        lock.writeLock().lock();
+        try {
+            int slot = find(bytes, hash);
+            int id;
+            if (slot >= 0) {
+                id = table[slot] - 1;
+            } else {
+                id = insert(bytes, hash);
+            }
+            store(id, address);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Remove a key, returns whether it was indexed
+     */
+    public boolean remove(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            int slot = find(bytes, hash(bytes));
+            if (slot < 0) {
+                return false;
+            }
+            
+            int id = table[slot] - 1;
+            table[slot] = DELETED;
+            removeSorted(id);
+            overflow.remove(id);
+            arenaDead += keyLengths[id];
+            keyLengths[id] = 0;
+            freeIds = grow(freeIds, freeCount + 1);
+            freeIds[freeCount++] = id;
+            liveCount--;
+            
+            if (arenaDead > ARENA_COMPACT_THRESHOLD && arenaDead > arenaUsed / 2) {
+                compactArena();
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    /**
+     * Snapshot of all keys in key order
+     */
+    public List<String> keys() {
+        lock.readLock().lock();
+        try {
+            List<String> keys = new ArrayList<>(liveCount);
+            for (IdBlock block : sorted) {
+                for (int i = 0; i < block.size; i++) {
+                    keys.add(keyAt(block.ids[i]));
+                }
+            }
+            return keys;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Keys in order starting at (or after, if not inclusive) the given key, stopping at the
+     * first key outside the prefix or once the limit is reached
+     */
+    public List<String> range(String from, boolean inclusive, String prefix, int limit) {
+        byte[] fromBytes = from.getBytes(StandardCharsets.UTF_8);
+        byte[] prefixBytes = prefix != null ? prefix.getBytes(StandardCharsets.UTF_8) : null;
+        
+        lock.readLock().lock();
+        try {
+            List<String> keys = new ArrayList<>(Math.min(limit, 256));
+            int first = lowerBlock(fromBytes, inclusive);
+            for (int b = first; b < sorted.size(); b++) {
+                IdBlock block = sorted.get(b);
+                for (int i = b == first ? lowerBound(block, fromBytes, inclusive) : 0; i < block.size; i++) {
+                    int id = block.ids[i];
+                    if (keys.size() >= limit || (prefixBytes != null && !startsWith(id, prefixBytes))) {
+                        return keys;
+                    }
+                    keys.add(keyAt(id));
+                }
+            }
+            return keys;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Approximate heap held by the index arrays and key arena
+     */
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            long columns = (long) keyOffsets.length * (4 + 4 + 4 + 8 + 8 + 8 + 4);
+            return columns + (long) table.length * 4 + (long) sorted.size() * SORTED_BLOCK_SIZE * 4
+                + (long) freeIds.length * 4 + arena.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Hash table
+    
+    private int find(byte[] key, int hash) {
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int value = table[slot];
+            if (value == EMPTY) {
+                return -1;
+            }
+            if (value != DELETED) {
+                int id = value - 1;
+                if (hashes[id] == hash && keyEquals(id, key)) {
+                    return slot;
+                }
+            }
+        }
+    }
+    
+    private int insert(byte[] key, int hash) {
+        if ((tableUsed + 1) * 2 > table.length) {
+            rehash();
+        }
+        
+        int id = allocateId();
+        hashes[id] = hash;
+        keyOffsets[id] = appendKey(key);
+        keyLengths[id] = key.length;
+        
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != EMPTY && table[slot] != DELETED) {
+            slot = (slot + 1) & mask;
+        }
+        if (table[slot] == EMPTY) {
+            tableUsed++;
+        }
+        table[slot] = id + 1;
+        
+        insertSorted(id, key);
+        liveCount++;
+        return id;
+    }
+    
+    private void rehash() {
+        int capacity = 16;
+        while (capacity < (liveCount + 1) * 3) {
+            capacity <<= 1;
+        }
+        
+        int[] old = table;
+        table = new int[capacity];
+        tableUsed = 0;
+        int mask = capacity - 1;
+        for (int value : old) {
+            if (value != EMPTY && value != DELETED) {
+                int slot = hashes[value - 1] & mask;
+                while (table[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = value;
+                tableUsed++;
+            }
+        }
+    }
+    
+    // Entry columns
+    
+    private int allocateId() {
+        if (freeCount > 0) {
+            return freeIds[--freeCount];
+        }
+        
+        int id = highWater++;
+        if (id == keyOffsets.length) {
+            int capacity = keyOffsets.length * 2;
+            keyOffsets = Arrays.copyOf(keyOffsets, capacity);
+            keyLengths = Arrays.copyOf(keyLengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            addresses = Arrays.copyOf(addresses, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            fingerprints = Arrays.copyOf(fingerprints, capacity);
+            valueSizes = Arrays.copyOf(valueSizes, capacity);
+        }
+        return id;
+    }
+    
+    private void store(int id, DataAddress address) {
+        List<Extent> extents = address.getExtents();
+        Extent first = extents.get(0);
+        
+        long packed = layout.toOffset(first.getStart());
+        if (extents.size() == 1 && first.getLength() <= LENGTH_MASK) {
+            packed |= (long) first.getLength() << LENGTH_SHIFT;
+            overflow.remove(id);
+        } else {
+            packed |= OVERFLOW_BIT;
+            overflow.put(id, extents);
+        }
+        if (address.isCompressed()) {
+            packed |= COMPRESSED_BIT;
+        }
+        
+        addresses[id] = packed;
+        versions[id] = address.getVersion();
+        fingerprints[id] = address.getFingerprint();
+        valueSizes[id] = address.getValueSize();
+    }
+    
+    private DataAddress toAddress(int id) {
+        long packed = addresses[id];
+        List<Extent> extents;
+        if ((packed & OVERFLOW_BIT) != 0) {
+            extents = overflow.get(id);
+        } else {
+            int length = (int) ((packed >>> LENGTH_SHIFT) & LENGTH_MASK);
+            extents = Collections.singletonList(new Extent(layout.toPosition(packed & OFFSET_MASK), length));
+        }
+        
+        BlockPosition start = extents.get(0).getStart();
+        return new DataAddress(start.getX() >> 4, start.getZ() >> 4, extents, versions[id],
+            (packed & COMPRESSED_BIT) != 0, fingerprints[id], valueSizes[id]);
+    }
+    
+    // Key arena
+    
+    private int appendKey(byte[] key) {
+        if (arenaUsed + key.length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaUsed + key.length));
+        }
+        int offset = arenaUsed;
+        System.arraycopy(key, 0, arena, offset, key.length);
+        arenaUsed += key.length;
+        return offset;
+    }
+    
+    /**
+     * Copy live keys into a fresh arena, dropping the bytes of removed ones
+     */
+    private void compactArena() {
+        byte[] compacted = new byte[Math.max(1024, (arenaUsed - arenaDead) * 2)];
+        int used = 0;
+        for (IdBlock block : sorted) {
+            for (int i = 0; i < block.size; i++) {
+                int id = block.ids[i];
+                System.arraycopy(arena, keyOffsets[id], compacted, used, keyLengths[id]);
+                keyOffsets[id] = used;
+                used += keyLengths[id];
+            }
+        }
+        arena = compacted;
+        arenaUsed = used;
+        arenaDead = 0;
+    }
+    
+    private String keyAt(int id) {
+        return new String(arena, keyOffsets[id], keyLengths[id], StandardCharsets.UTF_8);
+    }
+    
+    private boolean keyEquals(int id, byte[] key) {
+        if (keyLengths[id] != key.length) {
+            return false;
+        }
+        int offset = keyOffsets[id];
+        return Arrays.equals(arena, offset, offset + key.length, key, 0, key.length);
+    }
+    
+    private boolean startsWith(int id, byte[] prefix) {
+        if (keyLengths[id] < prefix.length) {
+            return false;
+        }
+        int offset = keyOffsets[id];
+        return Arrays.equals(arena, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+    
+    private int compareKey(int id, byte[] key) {
+        int offset = keyOffsets[id];
+        return Arrays.compareUnsigned(arena, offset, offset + keyLengths[id], key, 0, key.length);
+    }
+    
+    // Sorted order
+    
+    /**
+     * Index of the first block whose last key is >= key (or > key when not inclusive), i.e.
+     * the block holding the lower bound; sorted.size() if every key is smaller
+     */
+    private int lowerBlock(byte[] key, boolean inclusive) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            IdBlock block = sorted.get(mid);
+            int cmp = compareKey(block.ids[block.size - 1], key);
+            if (cmp < 0 || (!inclusive && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Position in a block of the first key >= key (or > key when not inclusive)
+     */
+    private int lowerBound(IdBlock block, byte[] key, boolean inclusive) {
+        int low = 0;
+        int high = block.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKey(block.ids[mid], key);
+            if (cmp < 0 || (!inclusive && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private void insertSorted(int id, byte[] key) {
+        int b = lowerBlock(key, true);
+        if (b == sorted.size()) {
+            // Larger than every key - append to the last block
+            if (b == 0) {
+                sorted.add(new IdBlock());
+            } else {
+                b--;
+            }
+        }
+        
+        IdBlock block = sorted.get(b);
+        int pos = lowerBound(block, key, true);
+        if (block.size == SORTED_BLOCK_SIZE) {
+            int half = SORTED_BLOCK_SIZE / 2;
+            IdBlock upper = new IdBlock();
+            System.arraycopy(block.ids, half, upper.ids, 0, SORTED_BLOCK_SIZE - half);
+            upper.size = SORTED_BLOCK_SIZE - half;
+            block.size = half;
+            sorted.add(b + 1, upper);
+            if (pos > half) {
+                block = upper;
+                pos -= half;
+            }
+        }
+        
+        System.arraycopy(block.ids, pos, block.ids, pos + 1, block.size - pos);
+        block.ids[pos] = id;
+        block.size++;
+    }
+    
+    private void removeSorted(int id) {
+        int offset = keyOffsets[id];
+        byte[] key = Arrays.copyOfRange(arena, offset, offset + keyLengths[id]);
+        int b = lowerBlock(key, true);
+        IdBlock block = sorted.get(b);
+        int pos = lowerBound(block, key, true);
+        System.arraycopy(block.ids, pos + 1, block.ids, pos, block.size - pos - 1);
+        if (--block.size == 0) {
+            sorted.remove(b);
+        }
+    }
+    
+    private void reset() {
+        table = new int[16];
+        tableUsed = 0;
+        keyOffsets = new int[16];
+        keyLengths = new int[16];
+        hashes = new int[16];
+        addresses = new long[16];
+        versions = new long[16];
+        fingerprints = new long[16];
+        valueSizes = new int[16];
+        highWater = 0;
+        liveCount = 0;
+        freeIds = new int[16];
+        freeCount = 0;
+        overflow.clear();
+        arena = new byte[1024];
+        arenaUsed = 0;
+        arenaDead = 0;
+        sorted.clear();
+    }
+    
+    private static int[] grow(int[] array, int needed) {
+        return needed <= array.length ? array : Arrays.copyOf(array, Math.max(needed, array.length * 2));
+    }
+    
+    // FNV-1a finished with a murmur mix so low bits are usable as a table slot
+    private static int hash(byte[] key) {
+        int h = 0x811c9dc5;
+        for (byte b : key) {
+            h ^= b & 0xFF;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
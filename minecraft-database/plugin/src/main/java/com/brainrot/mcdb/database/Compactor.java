@@ -0,0 +1,256 @@
+package com.brainrot.mcdb.database;
+
+import com.brainrot.mcdb.MinecraftDBPlugin;
+import com.brainrot.mcdb.models.DataAddress;
+import com.brainrot.mcdb.utils.ConfigManager;
+import com.brainrot.mcdb.utils.TaskScheduler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Incremental compactor that moves live entries into lower free runs to close the gaps left
+ * by deletes and relocations.
+ *
+ * A pass first snapshots entry placements, then relocates entries highest offset first (and
+ * fragmented entries before anything else), each into the lowest run that fits below it. Work
+ * is driven from the main thread (the global region on Folia) in small steps, each tick
+ * stopping once its time budget is spent; each move runs on the thread owning the entry.
+ * Every move copies the blocks, switches the index entry and only then frees the old blocks,
+ * so reads never see a half-moved entry.
+ */
+public class Compactor implements Runnable {
+    
+    private enum Phase { IDLE, PLANNING, MOVING }
+    
+    // Moves handed to region threads and not yet finished
+    private static final int MAX_PENDING_MOVES = 32;
+    
+    private static final class Candidate {
+        final String key;
+        final long offset;
+        final long version;
+        final boolean fragmented;
+        
+        Candidate(String key, long offset, long version, boolean fragmented) {
+            this.key = key;
+            this.offset = offset;
+            this.version = version;
+            this.fragmented = fragmented;
+        }
+    }
+    
+    private final MinecraftDBPlugin plugin;
+    private final BlockDatabase database;
+    private final AreaLayout layout;
+    private final ConfigManager config;
+    private final TaskScheduler scheduler;
+    
+    private TaskScheduler.Task task;
+    private TaskScheduler.Task schedule;
+    private final AtomicInteger pendingMoves = new AtomicInteger();
+    
+    private volatile Phase phase = Phase.IDLE;
+    private List<String> keys;
+    private List<Candidate> candidates;
+    private volatile int cursor;
+    private volatile int planned;
+    private long highWaterAtStart;
+    private long startedAt;
+    
+    // Totals across passes
+    private volatile long passes;
+    private final AtomicLong entriesMoved = new AtomicLong();
+    private final AtomicLong blocksMoved = new AtomicLong();
+    private final AtomicLong extentsMerged = new AtomicLong();
+    private volatile long reclaimedBlocks;
+    private volatile long lastCompletedAt;
+    
+    public Compactor(MinecraftDBPlugin plugin, BlockDatabase database, AreaLayout layout) {
+        this.plugin = plugin;
+        this.database = database;
+        this.layout = layout;
+        this.config = plugin.getConfigManager();
+        this.scheduler = plugin.getTaskScheduler();
+    }
+    
+    /**
+     * Start a pass on the main thread or global region. Returns false if one is already running.
+     */
+    public boolean start(String reason) {
+        if (phase != Phase.IDLE) {
+            return false;
+        }
+        
+        keys = new ArrayList<>(database.listKeys());
+        candidates = new ArrayList<>(keys.size());
+        cursor = 0;
+        planned = keys.size();
+        highWaterAtStart = database.getHighWaterMark();
+        startedAt = System.currentTimeMillis();
+        phase = Phase.PLANNING;
+        
+        plugin.getLogger().info("Compaction started (" + reason + "): " + planned + " entries");
+        task = scheduler.runGlobalTimer(this, 1L, 1L);
+        return true;
+    }
+    
+    /**
+     * Run a pass every interval, 0 disables the schedule
+     */
+    public void schedule(int intervalMinutes) {
+        if (schedule != null) {
+            schedule.cancel();
+            schedule = null;
+        }
+        if (intervalMinutes > 0) {
+            long ticks = intervalMinutes * 60L * 20L;
+            schedule = scheduler.runGlobalTimer(() -> start("scheduled"), ticks, ticks);
+        }
+    }
+    
+    public void stop() {
+        if (schedule != null) {
+            schedule.cancel();
+            schedule = null;
+        }
+        finish(false);
+    }
+    
+    @Override
+    public void run() {
+        long deadline = System.nanoTime() + config.getCompactionTickBudgetMillis() * 1_000_000L;
+        
+        if (phase == Phase.PLANNING) {
+            plan(deadline);
+        }
+        if (phase == Phase.MOVING) {
+            move(deadline);
+        }
+    }
+    
+    private void plan(long deadline) {
+        while (cursor < keys.size()) {
+            String key = keys.get(cursor++);
+            DataAddress address = database.getAddress(key);
+            if (address != null && address.getBlockCount() > 0) {
+                candidates.add(new Candidate(key, layout.toOffset(address.getBlockPosition()), address.getVersion(),
+                    address.getExtents().size() > 1));
+            }
+            if ((cursor & 63) == 0 && System.nanoTime() > deadline) {
+                return;
+            }
+        }
+        
+        // Fragmented entries first, then from the top of the area down
+        candidates.sort(Comparator.comparing((Candidate c) -> !c.fragmented)
+            .thenComparing(c -> c.offset, Comparator.reverseOrder()));
+        keys = null;
+        cursor = 0;
+        planned = candidates.size();
+        phase = Phase.MOVING;
+    }
+    
+    private void move(long deadline) {
+        while (cursor < candidates.size() && pendingMoves.get() < MAX_PENDING_MOVES) {
+            Candidate candidate = candidates.get(cursor++);
+            
+            // Inline on Paper; on Folia the entry's region thread does the move
+            pendingMoves.incrementAndGet();
+            database.supplyForKey(candidate.key, () -> database.relocate(candidate.key, candidate.version))
+                .whenComplete((moved, error) -> {
+                    if (moved != null && moved > 0) {
+                        entriesMoved.incrementAndGet();
+                        blocksMoved.addAndGet(moved);
+                        if (candidate.fragmented) {
+                            extentsMerged.incrementAndGet();
+                        }
+                    }
+                    pendingMoves.decrementAndGet();
+                });
+            if (System.nanoTime() > deadline) {
+                return;
+            }
+        }
+        if (cursor >= candidates.size() && pendingMoves.get() == 0) {
+            finish(true);
+        }
+    }
+    
+    private void finish(boolean completed) {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        if (phase == Phase.IDLE) {
+            return;
+        }
+        
+        long reclaimed = Math.max(0, highWaterAtStart - database.getHighWaterMark());
+        reclaimedBlocks += reclaimed;
+        phase = Phase.IDLE;
+        keys = null;
+        candidates = null;
+        
+        if (completed) {
+            passes++;
+            lastCompletedAt = System.currentTimeMillis();
+            plugin.getLogger().info("Compaction finished in " + (lastCompletedAt - startedAt) + "ms: "
+                + entriesMoved.get() + " entries moved in total, " + reclaimed + " blocks reclaimed this pass");
+        } else {
+            plugin.getLogger().info("Compaction stopped");
+        }
+    }
+    
+    public boolean isRunning() {
+        return phase != Phase.IDLE;
+    }
+    
+    /**
+     * idle, planning or moving
+     */
+    public String getState() {
+        return phase.name().toLowerCase();
+    }
+    
+    /**
+     * Percentage of the current phase completed, 100 when idle
+     */
+    public int getProgress() {
+        if (phase == Phase.IDLE) {
+            return 100;
+        }
+        int total = planned;
+        return total > 0 ? (int) Math.min(100, cursor * 100L / total) : 100;
+    }
+    
+    public long getPasses() {
+        return passes;
+    }
+    
+    public long getEntriesMoved() {
+        return entriesMoved.get();
+    }
+    
+    public long getBlocksMoved() {
+        return blocksMoved.get();
+    }
+    
+    public long getExtentsMerged() {
+        return extentsMerged.get();
+    }
+    
+    /**
+     * Blocks freed at the top of the area across all passes
+     */
+    public long getReclaimedBlocks() {
+        return reclaimedBlocks;
+    }
+    
+    public long getLastCompletedAt() {
+        return lastCompletedAt;
+    }
+}
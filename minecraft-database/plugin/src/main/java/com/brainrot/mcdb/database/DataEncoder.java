@@ -43,7 +43,14 @@ public class DataEncoder {
      * Simple encoding: 2 blocks per byte (4 bits per block)
      */
     public List<Material> encodeToBlocks(byte[] data) throws IOException {
-        byte[] processedData = useCompression ? compress(data) : data;
+        return encodeToBlocks(data, useCompression);
+    }
+    
+    /**
+     * Encode bytes into Materials, compressing first only if requested
+     */
+    public List<Material> encodeToBlocks(byte[] data, boolean compress) throws IOException {
+        byte[] processedData = compress ? compress(data) : data;
         List<Material> blocks = new ArrayList<>();
         
         for (byte b : processedData) {
@@ -63,6 +70,13 @@ public class DataEncoder {
      * Decode a list of Materials back into bytes
      */
     public byte[] decodeFromBlocks(List<Material> blocks) throws IOException {
+        return decodeFromBlocks(blocks, useCompression);
+    }
+    
+    /**
+     * Decode Materials back into bytes, decompressing only if the blocks were compressed
+     */
+    public byte[] decodeFromBlocks(List<Material> blocks, boolean compressed) throws IOException {
         if (blocks.size() % 2 != 0) {
             throw new IllegalArgumentException("Block list must have even number of blocks");
         }
@@ -78,7 +92,14 @@ public class DataEncoder {
         }
         
         byte[] data = baos.toByteArray();
-        return useCompression ? decompress(data) : data;
+        return compressed ? decompress(data) : data;
+    }
+    
+    /**
+     * Whether new entries are compressed by default
+     */
+    public boolean isCompressionEnabled() {
+        return useCompression;
     }
     
     /**
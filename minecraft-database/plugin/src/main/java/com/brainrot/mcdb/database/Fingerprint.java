@@ -0,0 +1,41 @@
+package com.brainrot.mcdb.database;
+
+/**
+ * 64-bit content fingerprint (CRC-64/XZ, ECMA-182 polynomial) used to detect unchanged writes
+ */
+public final class Fingerprint {
+    
+    // Marks an entry whose fingerprint isn't known (e.g. after a partial update)
+    public static final long UNKNOWN = 0L;
+    
+    private static final long POLY = 0xC96C5795D7870F42L;
+    private static final long[] TABLE = new long[256];
+    
+    static {
+        for (int i = 0; i < 256; i++) {
+            long crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLY : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+    
+    private Fingerprint() {
+    }
+    
+    /**
+     * Fingerprint of the raw (uncompressed) value
+     */
+    public static long of(byte[] data) {
+        long crc = -1L;
+        for (byte b : data) {
+            crc = TABLE[(int) ((crc ^ b) & 0xFF)] ^ (crc >>> 8);
+        }
+        return ~crc;
+    }
+    
+    public static String toHex(long fingerprint) {
+        return String.format("%016x", fingerprint);
+    }
+}
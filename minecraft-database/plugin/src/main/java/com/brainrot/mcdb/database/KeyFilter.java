@@ -0,0 +1,215 @@
+package com.brainrot.mcdb.database;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Counting Bloom filter over the keys in the index.
+ *
+ * Answers "definitely absent" for most missing keys without touching the index, and supports
+ * removal because each slot is a small counter instead of a bit. When the number of keys
+ * outgrows the sizing the filter is rebuilt at twice the capacity from the live key set, which
+ * keeps the false positive rate near 1% as the database grows.
+ *
+ * Lookups take no lock: they read the current table through a volatile field. Adds and removes
+ * are serialised on the filter's monitor, and a resize builds its table outside the monitor and
+ * publishes it in one swap.
+ */
+public class KeyFilter {
+    
+    // ~10 counters per key and 7 probes give a ~1% false positive rate at capacity
+    private static final int COUNTERS_PER_KEY = 10;
+    private static final int HASH_COUNT = 7;
+    
+    // Saturated counters are never decremented, so they can't cause false negatives
+    private static final int MAX_COUNT = 0xFF;
+    
+    // Counter stores are released and lookups acquire them, so a key added before it is
+    // published to the index is visible to every later lookup
+    private static final VarHandle COUNTER = MethodHandles.arrayElementVarHandle(byte[].class);
+    
+    private static final class Table {
+        final int capacity;
+        final byte[] counters;
+        int keyCount;
+        
+        Table(int capacity) {
+            this.capacity = capacity;
+            this.counters = new byte[capacity * COUNTERS_PER_KEY];
+        }
+    }
+    
+    private volatile Table table;
+    private final LongAdder negatives = new LongAdder();
+    
+    // Latest state (true = added) of keys changed while a resized table is being built, or null
+    private Map<String, Boolean> resizeLog;
+    // Bumped by clear, so a resize that started before it is dropped
+    private int generation;
+    
+    public KeyFilter(int initialCapacity) {
+        this.table = new Table(Math.max(1024, initialCapacity));
+    }
+    
+    /**
+     * False means the key is definitely not stored; true means it probably is
+     */
+    public boolean mightContain(String key) {
+        Table current = table;
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        
+        for (int i = 0; i < HASH_COUNT; i++) {
+            if ((byte) COUNTER.getAcquire(current.counters, slot(current, h1, h2, i)) == 0) {
+                negatives.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Record a key. Returns false once the filter is over capacity and should be resized.
+     */
+    public synchronized boolean add(String key) {
+        Table current = table;
+        increment(current, key);
+        if (resizeLog != null) {
+            resizeLog.put(key, Boolean.TRUE);
+        }
+        return current.keyCount <= current.capacity;
+    }
+    
+    public synchronized void remove(String key) {
+        decrement(table, key);
+        if (resizeLog != null) {
+            resizeLog.put(key, Boolean.FALSE);
+        }
+    }
+    
+    /**
+     * Rebuild at a larger capacity (at least double) from the live keys. The supplier is called
+     * once changes are being logged; the new table is filled without holding the monitor, then
+     * caught up with the logged changes and swapped in. Returns false if another resize is
+     * already running or the filter was cleared meanwhile.
+     */
+    public boolean resize(Supplier<Collection<String>> liveKeys) {
+        int started;
+        int capacity;
+        synchronized (this) {
+            if (resizeLog != null) {
+                return false;
+            }
+            resizeLog = new HashMap<>();
+            started = generation;
+            capacity = table.capacity;
+        }
+        
+        try {
+            Set<String> keys = new HashSet<>(liveKeys.get());
+            Table built = new Table(Math.max(capacity * 2, keys.size() * 2));
+            for (String key : keys) {
+                increment(built, key);
+            }
+            
+            synchronized (this) {
+                if (generation != started) {
+                    return false;
+                }
+                // A logged key may or may not be in the snapshot, so only its net change is applied
+                for (Map.Entry<String, Boolean> change : resizeLog.entrySet()) {
+                    boolean listed = keys.contains(change.getKey());
+                    if (change.getValue() && !listed) {
+                        increment(built, change.getKey());
+                    } else if (!change.getValue() && listed) {
+                        decrement(built, change.getKey());
+                    }
+                }
+                table = built;
+                return true;
+            }
+        } finally {
+            synchronized (this) {
+                if (generation == started) {
+                    resizeLog = null;
+                }
+            }
+        }
+    }
+    
+    public synchronized void clear() {
+        table = new Table(table.capacity);
+        resizeLog = null;
+        generation++;
+    }
+    
+    public int getCapacity() {
+        return table.capacity;
+    }
+    
+    /**
+     * Number of lookups answered as definitely absent
+     */
+    public long getNegatives() {
+        return negatives.sum();
+    }
+    
+    private static void increment(Table target, String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int slot = slot(target, h1, h2, i);
+            int count = target.counters[slot] & 0xFF;
+            if (count < MAX_COUNT) {
+                COUNTER.setRelease(target.counters, slot, (byte) (count + 1));
+            }
+        }
+        target.keyCount++;
+    }
+    
+    private static void decrement(Table target, String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int slot = slot(target, h1, h2, i);
+            int count = target.counters[slot] & 0xFF;
+            if (count > 0 && count < MAX_COUNT) {
+                COUNTER.setRelease(target.counters, slot, (byte) (count - 1));
+            }
+        }
+        target.keyCount = Math.max(0, target.keyCount - 1);
+    }
+    
+    // Kirsch-Mitzenmacher double hashing: probe i is h1 + i * h2
+    private static int slot(Table target, int h1, int h2, int i) {
+        return Math.floorMod(h1 + i * h2, target.counters.length);
+    }
+    
+    // 64-bit FNV-1a over the UTF-8 key, finished with a murmur mix so both halves are usable
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,306 @@
+package com.brainrot.mcdb.database;
+
+import com.brainrot.mcdb.models.CacheStats;
+import com.brainrot.mcdb.models.DataEntry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Off-heap value cache backed by direct memory slabs.
+ *
+ * Memory is reserved in fixed 1 MB slabs that are carved into equal slots for one size class
+ * (powers of two from 64 bytes up to the slab size), similar to memcached. Only the small
+ * key -> slot index lives on the heap, so cached values add no GC pressure. When a class runs
+ * out of slots and no more slabs can be allocated, its least recently used slot is reused; a
+ * class holding no slab at that point takes one over from the class holding the most.
+ */
+public class OffHeapCache {
+
+    private static final int SLAB_SIZE = 1024 * 1024;
+    private static final int MIN_SLOT_SIZE = 64;
+    private static final int COPY_CHUNK = 8192;
+
+    private static final class Slot {
+        final int sizeClass;
+        final int slab;
+        final int offset;
+        int length;
+        long version;
+        long expiresAt;
+
+        Slot(int sizeClass, int slab, int offset) {
+            this.sizeClass = sizeClass;
+            this.slab = slab;
+            this.offset = offset;
+        }
+    }
+
+    private static final class SizeClass {
+        final int slotSize;
+        final ArrayDeque<Slot> free = new ArrayDeque<>();
+        // Access ordered, eldest entry is the eviction candidate
+        final LinkedHashMap<String, Slot> used = new LinkedHashMap<>(16, 0.75f, true);
+        int slabCount;
+
+        SizeClass(int slotSize) {
+            this.slotSize = slotSize;
+        }
+    }
+
+    private final int maxSlabs;
+    private final long ttlMillis;
+    private final List<ByteBuffer> slabs;
+    private final SizeClass[] classes;
+    private final Map<String, Slot> index;
+
+    // Reused for streaming values out of slabs, guarded by the cache monitor
+    private final byte[] copyBuffer = new byte[COPY_CHUNK];
+
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long reassignments;
+
+    public OffHeapCache(long capacityBytes, long ttlMillis) {
+        this.maxSlabs = (int) Math.max(1, capacityBytes / SLAB_SIZE);
+        this.ttlMillis = Math.max(1, ttlMillis);
+        this.slabs = new ArrayList<>();
+        this.index = new HashMap<>();
+
+        List<SizeClass> sizes = new ArrayList<>();
+        for (int size = MIN_SLOT_SIZE; size <= SLAB_SIZE; size <<= 1) {
+            sizes.add(new SizeClass(size));
+        }
+        this.classes = sizes.toArray(new SizeClass[0]);
+    }
+
+    /**
+     * Copy a cached value and its version out of its slab, or null on a miss
+     */
+    public synchronized DataEntry get(String key) {
+        Slot slot = lookup(key);
+        if (slot == null) {
+            return null;
+        }
+
+        byte[] value = new byte[slot.length];
+        slabs.get(slot.slab).get(slot.offset, value, 0, slot.length);
+        return new DataEntry(key, value, null, slot.version);
+    }
+
+    /**
+     * Copy a cached value straight from its slab into the stream (e.g. a response encoder),
+     * without an intermediate array. Returns the value's version, or -1 on a miss, in which
+     * case nothing is written.
+     */
+    public synchronized long read(String key, OutputStream out) throws IOException {
+        Slot slot = lookup(key);
+        if (slot == null) {
+            return -1;
+        }
+
+        ByteBuffer slab = slabs.get(slot.slab);
+        for (int done = 0; done < slot.length; ) {
+            int chunk = Math.min(copyBuffer.length, slot.length - done);
+            slab.get(slot.offset + done, copyBuffer, 0, chunk);
+            out.write(copyBuffer, 0, chunk);
+            done += chunk;
+        }
+        return slot.version;
+    }
+
+    /**
+     * Store an entry's value and version, silently skipping values larger than a slab
+     */
+    public synchronized void put(String key, DataEntry entry) {
+        invalidate(key);
+        byte[] value = entry.getValue();
+
+        int sizeClass = sizeClassFor(value.length);
+        if (sizeClass < 0) {
+            return;
+        }
+
+        Slot slot = allocate(sizeClass);
+        if (slot == null) {
+            return;
+        }
+
+        slabs.get(slot.slab).put(slot.offset, value, 0, value.length);
+        slot.length = value.length;
+        slot.version = entry.getVersion();
+        slot.expiresAt = System.currentTimeMillis() + ttlMillis;
+
+        index.put(key, slot);
+        classes[sizeClass].used.put(key, slot);
+        usedBytes += value.length;
+    }
+
+    /**
+     * Whether a live entry expires within the given window. Doesn't count as an access.
+     */
+    public synchronized boolean isExpiringSoon(String key, long withinMillis) {
+        Slot slot = index.get(key);
+        return slot != null && slot.expiresAt - System.currentTimeMillis() <= withinMillis;
+    }
+
+    public synchronized void invalidate(String key) {
+        Slot slot = index.get(key);
+        if (slot != null) {
+            release(key, slot);
+        }
+    }
+
+    /**
+     * Drop all entries, keeping the slabs for reuse
+     */
+    public synchronized void clear() {
+        for (Map.Entry<String, Slot> entry : new ArrayList<>(index.entrySet())) {
+            release(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Direct memory reserved by slabs
+     */
+    public synchronized long getReservedBytes() {
+        return (long) slabs.size() * SLAB_SIZE;
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(index.size(), usedBytes, -1, (long) maxSlabs * SLAB_SIZE,
+            hits, misses, evictions, expirations);
+    }
+
+    /**
+     * Number of slabs moved to a size class that had none
+     */
+    public synchronized long getSlabReassignments() {
+        return reassignments;
+    }
+
+    /**
+     * Live slot for a key, counting the hit or miss and refreshing its LRU position
+     */
+    private Slot lookup(String key) {
+        Slot slot = index.get(key);
+        if (slot == null) {
+            misses++;
+            return null;
+        }
+
+        if (slot.expiresAt <= System.currentTimeMillis()) {
+            release(key, slot);
+            expirations++;
+            misses++;
+            return null;
+        }
+
+        classes[slot.sizeClass].used.get(key);
+        hits++;
+        return slot;
+    }
+
+    private int sizeClassFor(int length) {
+        for (int i = 0; i < classes.length; i++) {
+            if (length <= classes[i].slotSize) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Slot allocate(int sizeClass) {
+        SizeClass cls = classes[sizeClass];
+
+        if (cls.free.isEmpty() && slabs.size() < maxSlabs) {
+            slabs.add(ByteBuffer.allocateDirect(SLAB_SIZE));
+            carve(slabs.size() - 1, sizeClass);
+        } else if (cls.free.isEmpty() && cls.slabCount == 0) {
+            reassignSlab(sizeClass);
+        }
+
+        if (cls.free.isEmpty()) {
+            // Reuse the least recently used slot of this class
+            Iterator<Map.Entry<String, Slot>> eldest = cls.used.entrySet().iterator();
+            if (!eldest.hasNext()) {
+                return null;
+            }
+            Map.Entry<String, Slot> victim = eldest.next();
+            release(victim.getKey(), victim.getValue());
+            evictions++;
+        }
+
+        return cls.free.poll();
+    }
+
+    /**
+     * Cut a slab into free slots for a class
+     */
+    private void carve(int slab, int sizeClass) {
+        SizeClass cls = classes[sizeClass];
+        for (int offset = 0; offset + cls.slotSize <= SLAB_SIZE; offset += cls.slotSize) {
+            cls.free.add(new Slot(sizeClass, slab, offset));
+        }
+        cls.slabCount++;
+    }
+
+    /**
+     * Give a class without slabs one taken from the class holding the most, evicting the
+     * donor's entries in it. Otherwise the classes that asked first keep every slab once the
+     * cache is full, and values of other sizes could never be cached.
+     */
+    private void reassignSlab(int sizeClass) {
+        SizeClass donor = null;
+        for (SizeClass cls : classes) {
+            if (cls != classes[sizeClass] && cls.slabCount > 0 && (donor == null || cls.slabCount > donor.slabCount)) {
+                donor = cls;
+            }
+        }
+        if (donor == null) {
+            return;
+        }
+
+        // The slab holding the donor's least recently used entry
+        int slab = !donor.used.isEmpty() ? donor.used.values().iterator().next().slab : donor.free.peek().slab;
+
+        Iterator<Map.Entry<String, Slot>> entries = donor.used.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Slot> entry = entries.next();
+            if (entry.getValue().slab == slab) {
+                entries.remove();
+                index.remove(entry.getKey());
+                usedBytes -= entry.getValue().length;
+                evictions++;
+            }
+        }
+        donor.free.removeIf(slot -> slot.slab == slab);
+        donor.slabCount--;
+
+        carve(slab, sizeClass);
+        reassignments++;
+    }
+
+    private void release(String key, Slot slot) {
+        index.remove(key);
+        classes[slot.sizeClass].used.remove(key);
+        classes[slot.sizeClass].free.push(slot);
+        usedBytes -= slot.length;
+        slot.length = 0;
+    }
+}
@@ -0,0 +1,99 @@
+package com.brainrot.mcdb.database;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.List;
+
+/**
+ * Immutable set of protected boxes in one world, checked by the protection listeners.
+ *
+ * Boxes are kept flat in an int array behind a union bounding box, so a location outside the
+ * protected area is rejected with a world comparison and a few integer compares. A new index
+ * is built whenever the protected area changes.
+ */
+public final class ProtectionIndex {
+    
+    private static final int[] NO_BOXES = new int[0];
+    
+    private final World world;
+    
+    // minX, minY, minZ, maxX, maxY, maxZ per box, inclusive
+    private final int[] boxes;
+    
+    // Union of all boxes
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    
+    public ProtectionIndex(World world, List<AreaLayout> areas) {
+        this.world = world;
+        this.boxes = areas.isEmpty() ? NO_BOXES : new int[areas.size() * 6];
+        
+        int lowX = Integer.MAX_VALUE, lowY = Integer.MAX_VALUE, lowZ = Integer.MAX_VALUE;
+        int highX = Integer.MIN_VALUE, highY = Integer.MIN_VALUE, highZ = Integer.MIN_VALUE;
+        for (int i = 0; i < areas.size(); i++) {
+            AreaLayout area = areas.get(i);
+            int base = i * 6;
+            boxes[base] = area.getStart().getX();
+            boxes[base + 1] = area.getStart().getY();
+            boxes[base + 2] = area.getStart().getZ();
+            boxes[base + 3] = area.getEnd().getX();
+            boxes[base + 4] = area.getEnd().getY();
+            boxes[base + 5] = area.getEnd().getZ();
+            
+            lowX = Math.min(lowX, boxes[base]);
+            lowY = Math.min(lowY, boxes[base + 1]);
+            lowZ = Math.min(lowZ, boxes[base + 2]);
+            highX = Math.max(highX, boxes[base + 3]);
+            highY = Math.max(highY, boxes[base + 4]);
+            highZ = Math.max(highZ, boxes[base + 5]);
+        }
+        this.minX = lowX;
+        this.minY = lowY;
+        this.minZ = lowZ;
+        this.maxX = highX;
+        this.maxY = highY;
+        this.maxZ = highZ;
+    }
+    
+    /**
+     * Index protecting nothing, used before the world is known
+     */
+    public static ProtectionIndex empty() {
+        return new ProtectionIndex(null, List.of());
+    }
+    
+    public boolean contains(Location location) {
+        return location.getWorld() == world && world != null
+            && contains(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+    
+    public boolean contains(Block block) {
+        return block.getWorld() == world && world != null && contains(block.getX(), block.getY(), block.getZ());
+    }
+    
+    /**
+     * Whether a block position in the index's world is protected
+     */
+    public boolean contains(int x, int y, int z) {
+        if (x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ) {
+            return false;
+        }
+        for (int base = 0; base < boxes.length; base += 6) {
+            if (x >= boxes[base] && y >= boxes[base + 1] && z >= boxes[base + 2]
+                    && x <= boxes[base + 3] && y <= boxes[base + 4] && z <= boxes[base + 5]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public World getWorld() {
+        return world;
+    }
+}
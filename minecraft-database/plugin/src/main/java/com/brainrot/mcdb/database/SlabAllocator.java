@@ -0,0 +1,376 @@
+package com.brainrot.mcdb.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Size-class slab allocator for small entries, in the style of memcached.
+ *
+ * A slab is one full chunk section taken from the SpaceAllocator and carved into equal slots of
+ * a single size class. Each class keeps a stack of free slots, so placing a small entry is a pop
+ * instead of a search, and freed slots are reused as-is instead of leaving slivers behind.
+ * Waste is bounded by the gap between adjacent classes plus the unused tail of each slab.
+ *
+ * Class sizes start out geometric and are periodically re-derived from a histogram of observed
+ * entry sizes, so the classes follow the real value-size distribution. Existing slabs keep
+ * their slot size; slabs of a retired class are handed back once they are empty.
+ */
+public class SlabAllocator {
+    
+    // Slot sizes are multiples of this many blocks
+    private static final int GRANULARITY = 16;
+    private static final int CLASS_COUNT = 10;
+    
+    // Re-derive classes after this many allocations
+    private static final int ADAPT_INTERVAL = 2048;
+    
+    // Free slot entries carry the slab generation above this bit, so stale entries can be dropped
+    private static final int GENERATION_SHIFT = 40;
+    private static final long OFFSET_MASK = (1L << GENERATION_SHIFT) - 1;
+    
+    private static final class SlotStack {
+        long[] slots = new long[64];
+        int size;
+        
+        void push(long slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+        
+        long pop() {
+            return size > 0 ? slots[--size] : -1;
+        }
+    }
+    
+    private final SpaceAllocator space;
+    private AreaLayout layout;
+    private final int slabSize;
+    private final int maxSlotSize;
+    
+    private int[] classSizes;
+    private final Map<Integer, SlotStack> freeSlots;
+    
+    // Per section: slot size if it is a slab (0 otherwise), live slot count and generation
+    private int[] slabSlotSize;
+    private int[] slabUsed;
+    private int[] slabGeneration;
+    private int slabCount;
+    
+    // Requested sizes in GRANULARITY buckets, decayed at each adaptation
+    private final long[] histogram;
+    private int sinceAdapt;
+    
+    private long allocations;
+    
+    public SlabAllocator(SpaceAllocator space, AreaLayout layout) {
+        this.space = space;
+        this.layout = layout;
+        this.slabSize = 4096;
+        this.maxSlotSize = slabSize / 2;
+        this.freeSlots = new HashMap<>();
+        
+        int sections = layout.getSectionCount();
+        this.slabSlotSize = new int[sections];
+        this.slabUsed = new int[sections];
+        this.slabGeneration = new int[sections];
+        this.histogram = new long[maxSlotSize / GRANULARITY];
+        
+        // Geometric starting classes, growth factor 1.5
+        List<Integer> sizes = new ArrayList<>();
+        for (int size = GRANULARITY; size < maxSlotSize; size = roundUp((int) (size * 1.5))) {
+            sizes.add(size);
+        }
+        sizes.add(maxSlotSize);
+        this.classSizes = sizes.stream().mapToInt(Integer::intValue).toArray();
+    }
+    
+    /**
+     * Largest entry (in blocks) served from slabs
+     */
+    public int getMaxSlotSize() {
+        return maxSlotSize;
+    }
+    
+    /**
+     * Take a slot for an entry of the given size, or -1 if it is too large or no slab can be carved
+     */
+    public synchronized long allocate(int length) {
+        return allocate(length, null);
+    }
+    
+    /**
+     * Take a slot within the allowed chunk columns (null allows all)
+     */
+    public synchronized long allocate(int length, IntPredicate columns) {
+        return allocate(length, null, columns);
+    }
+    
+    /**
+     * Take a slot, trying the preferred columns before the allowed ones. A null preference
+     * tries the allowed columns only.
+     */
+    public synchronized long allocate(int length, IntPredicate preferred, IntPredicate columns) {
+        if (length <= 0 || length > maxSlotSize) {
+            return -1;
+        }
+        record(length);
+        
+        int size = classFor(length);
+        long slot = preferred != null ? takeSlot(size, preferred) : -1;
+        if (slot < 0) {
+            slot = takeSlot(size, columns);
+        }
+        if (slot < 0) {
+            // Area is out of whole sections - fall back to a free slot of a larger class
+            for (int larger : new ArrayList<>(freeSlots.keySet())) {
+                if (larger > size && (slot = popSlot(larger, columns)) >= 0) {
+                    break;
+                }
+            }
+        }
+        
+        if (slot >= 0) {
+            slabUsed[layout.getSectionIndex(slot)]++;
+            allocations++;
+        }
+        return slot;
+    }
+    
+    /**
+     * Handle a release inside a slab. Returns false if the range isn't in a slab and belongs to
+     * the SpaceAllocator. Only a release starting at a slot boundary frees the slot; trimming
+     * the tail of an entry keeps the slot with its entry.
+     */
+    public synchronized boolean release(long offset, int length) {
+        int section = layout.getSectionIndex(offset);
+        int size = slabSlotSize[section];
+        if (size == 0) {
+            return false;
+        }
+        
+        long sectionStart = layout.getSectionStart(section);
+        if ((offset - sectionStart) % size != 0) {
+            return true;
+        }
+        
+        slabUsed[section]--;
+        if (slabUsed[section] == 0 && !isActiveClass(size)) {
+            // Empty slab of a retired class - give the section back
+            slabSlotSize[section] = 0;
+            slabGeneration[section]++;
+            slabCount--;
+            space.release(sectionStart, slabSize);
+        } else {
+            pushSlot(offset, section, size);
+        }
+        return true;
+    }
+    
+    /**
+     * Slot size if the offset is the start of a slab slot, 0 otherwise
+     */
+    public synchronized int getSlotSize(long offset) {
+        int section = layout.getSectionIndex(offset);
+        int size = slabSlotSize[section];
+        return size != 0 && (offset - layout.getSectionStart(section)) % size == 0 ? size : 0;
+    }
+    
+    public synchronized boolean isSlab(long offset) {
+        return slabSlotSize[layout.getSectionIndex(offset)] != 0;
+    }
+    
+    /**
+     * Extend the per-section state to a grown layout with unchanged offsets
+     */
+    public synchronized void grow(AreaLayout grown) {
+        int sections = grown.getSectionCount();
+        slabSlotSize = Arrays.copyOf(slabSlotSize, sections);
+        slabUsed = Arrays.copyOf(slabUsed, sections);
+        slabGeneration = Arrays.copyOf(slabGeneration, sections);
+        layout = grown;
+    }
+    
+    public synchronized void clear() {
+        freeSlots.clear();
+        for (int section = 0; section < slabSlotSize.length; section++) {
+            if (slabSlotSize[section] != 0) {
+                slabGeneration[section]++;
+            }
+            slabSlotSize[section] = 0;
+            slabUsed[section] = 0;
+        }
+        slabCount = 0;
+    }
+    
+    public synchronized int getSlabCount() {
+        return slabCount;
+    }
+    
+    public synchronized long getAllocations() {
+        return allocations;
+    }
+    
+    public synchronized int[] getClassSizes() {
+        return classSizes.clone();
+    }
+    
+    // Slots
+    
+    private long popSlot(int size, IntPredicate columns) {
+        SlotStack stack = freeSlots.get(size);
+        if (stack == null) {
+            return -1;
+        }
+        
+        // Valid slots in columns that aren't allowed are put back afterwards
+        List<Long> skipped = null;
+        long found = -1;
+        long entry;
+        while ((entry = stack.pop()) >= 0) {
+            long offset = entry & OFFSET_MASK;
+            int section = layout.getSectionIndex(offset);
+            if (slabSlotSize[section] != size || slabGeneration[section] != (int) (entry >>> GENERATION_SHIFT)) {
+                continue;
+            }
+            if (columns == null || columns.test(layout.getColumnIndex(offset))) {
+                found = offset;
+                break;
+            }
+            if (skipped == null) {
+                skipped = new ArrayList<>();
+            }
+            skipped.add(entry);
+        }
+        
+        if (skipped != null) {
+            for (int i = skipped.size() - 1; i >= 0; i--) {
+                stack.push(skipped.get(i));
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Free slot of the size, carving a new slab if the class has none
+     */
+    private long takeSlot(int size, IntPredicate columns) {
+        long slot = popSlot(size, columns);
+        if (slot < 0 && carveSlab(size, columns)) {
+            slot = popSlot(size, columns);
+        }
+        return slot;
+    }
+    
+    private void pushSlot(long offset, int section, int size) {
+        freeSlots.computeIfAbsent(size, s -> new SlotStack())
+            .push(((long) slabGeneration[section] << GENERATION_SHIFT) | offset);
+    }
+    
+    private boolean carveSlab(int size, IntPredicate columns) {
+        int section;
+        long start = space.allocateSection(slabSize, columns);
+        if (start >= 0) {
+            section = layout.getSectionIndex(start);
+            slabCount++;
+        } else if ((section = findEmptySlab(columns)) >= 0) {
+            // No free section left - re-carve an empty slab of another class
+            start = layout.getSectionStart(section);
+            slabGeneration[section]++;
+        } else {
+            return false;
+        }
+        
+        slabSlotSize[section] = size;
+        slabUsed[section] = 0;
+        
+        // Push in reverse so slots are handed out from the bottom of the section
+        for (int slot = slabSize / size - 1; slot >= 0; slot--) {
+            pushSlot(start + (long) slot * size, section, size);
+        }
+        return true;
+    }
+    
+    private int findEmptySlab(IntPredicate columns) {
+        for (int section = 0; section < slabSlotSize.length; section++) {
+            if (slabSlotSize[section] != 0 && slabUsed[section] == 0
+                    && (columns == null || columns.test(layout.getColumnIndex(layout.getSectionStart(section))))) {
+                return section;
+            }
+        }
+        return -1;
+    }
+    
+    // Size classes
+    
+    private int classFor(int length) {
+        for (int size : classSizes) {
+            if (size >= length) {
+                return size;
+            }
+        }
+        return maxSlotSize;
+    }
+    
+    private boolean isActiveClass(int size) {
+        for (int active : classSizes) {
+            if (active == size) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void record(int length) {
+        histogram[(length - 1) / GRANULARITY]++;
+        if (++sinceAdapt >= ADAPT_INTERVAL) {
+            adapt();
+            sinceAdapt = 0;
+        }
+    }
+    
+    /**
+     * Place class boundaries at evenly spaced quantiles of the observed sizes
+     */
+    private void adapt() {
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return;
+        }
+        
+        List<Integer> sizes = new ArrayList<>();
+        long seen = 0;
+        int next = 1;
+        for (int bucket = 0; bucket < histogram.length && next < CLASS_COUNT; bucket++) {
+            seen += histogram[bucket];
+            int size = (bucket + 1) * GRANULARITY;
+            while (next < CLASS_COUNT && seen * CLASS_COUNT >= total * next) {
+                if (sizes.isEmpty() || sizes.get(sizes.size() - 1) != size) {
+                    sizes.add(size);
+                }
+                next++;
+            }
+        }
+        if (sizes.isEmpty() || sizes.get(sizes.size() - 1) != maxSlotSize) {
+            sizes.add(maxSlotSize);
+        }
+        classSizes = sizes.stream().mapToInt(Integer::intValue).toArray();
+        
+        // Decay so the classes follow recent traffic
+        for (int bucket = 0; bucket < histogram.length; bucket++) {
+            histogram[bucket] >>= 1;
+        }
+    }
+    
+    private static int roundUp(int size) {
+        return (size + GRANULARITY - 1) / GRANULARITY * GRANULARITY;
+    }
+}
@@ -0,0 +1,360 @@
+package com.brainrot.mcdb.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Tracks which blocks of the database area are in use and picks where new entries go.
+ *
+ * Placement tries to keep an entry inside a single chunk section, choosing the section whose
+ * largest free run fits the entry most tightly. Entries larger than a section are placed within
+ * one chunk column (consecutive sections of the same chunk) when possible, and only fall back to
+ * a first-fit run across chunks when nothing else fits. Fewer chunks touched per write means
+ * fewer chunks dirtied, re-sent and saved.
+ *
+ * Per-section free counts and largest free runs are kept as summaries; the largest run is
+ * recomputed lazily for sections that changed since it was last needed.
+ *
+ * Placement can be limited to some chunk columns (on Folia, the columns owned by the calling
+ * region thread); a null column filter allows every column.
+ */
+public class SpaceAllocator {
+    
+    private AreaLayout layout;
+    private int totalBlocks;
+    
+    // Set bits are blocks in use
+    private final BitSet used;
+    
+    private int[] freeCount;
+    private int[] largestRun;
+    private final BitSet staleRuns;
+    
+    private long sectionPlacements;
+    private long columnPlacements;
+    private long spanningPlacements;
+    
+    public SpaceAllocator(AreaLayout layout) {
+        this.layout = layout;
+        this.totalBlocks = layout.getTotalBlocks();
+        this.used = new BitSet(totalBlocks);
+        
+        int sections = layout.getSectionCount();
+        this.freeCount = new int[sections];
+        this.largestRun = new int[sections];
+        this.staleRuns = new BitSet(sections);
+        reset();
+    }
+    
+    /**
+     * Reserve a run of free blocks, returning its offset or -1 if no run is large enough
+     */
+    public synchronized long allocate(int length) {
+        return allocate(length, null);
+    }
+    
+    /**
+     * Reserve a run of free blocks within the allowed chunk columns
+     */
+    public synchronized long allocate(int length, IntPredicate columns) {
+        if (length <= 0) {
+            return 0;
+        }
+        
+        int offset = allocateInSection(length, columns);
+        if (offset >= 0) {
+            sectionPlacements++;
+        } else if ((offset = allocateInColumn(length, columns)) >= 0) {
+            columnPlacements++;
+        } else if ((offset = findSpanningRun(length, columns)) >= 0) {
+            spanningPlacements++;
+        } else {
+            return -1;
+        }
+        
+        markUsed(offset, length);
+        return offset;
+    }
+    
+    /**
+     * Reserve a specific run (e.g. to grow an entry in place), returns false if any block is taken
+     */
+    public synchronized boolean reserve(long offset, int length) {
+        if (offset < 0 || offset + length > totalBlocks) {
+            return false;
+        }
+        int start = (int) offset;
+        int next = used.nextSetBit(start);
+        if (next >= 0 && next < start + length) {
+            return false;
+        }
+        markUsed(start, length);
+        return true;
+    }
+    
+    /**
+     * Reserve the lowest free run that ends at or before the limit, kept within one section or
+     * at least one chunk column. Used by compaction to pack entries towards the start.
+     */
+    public synchronized long allocateBelow(int length, long limit, IntPredicate columns) {
+        int bound = (int) Math.min(limit, totalBlocks);
+        int offset = -1;
+        
+        for (int section = 0; section < freeCount.length && offset < 0; section++) {
+            int start = (int) layout.getSectionStart(section);
+            if (start + length > bound) {
+                break;
+            }
+            if (allowed(columns, start) && freeCount[section] >= length && largestRun(section) >= length) {
+                offset = findRun(start, Math.min(bound, start + layout.getSectionLength(section)), length);
+            }
+        }
+        
+        int columnSize = layout.getColumnSize();
+        for (int start = 0; offset < 0 && start + length <= bound; start += columnSize) {
+            if (allowed(columns, start)) {
+                offset = findRun(start, Math.min(bound, start + columnSize), length);
+            }
+        }
+        
+        if (offset < 0) {
+            return -1;
+        }
+        markUsed(offset, length);
+        return offset;
+    }
+    
+    /**
+     * Reserve the lowest section that is entirely free and exactly length blocks long,
+     * returning its offset or -1. Used to carve slabs.
+     */
+    public synchronized long allocateSection(int length, IntPredicate columns) {
+        for (int section = 0; section < freeCount.length; section++) {
+            if (freeCount[section] == length && layout.getSectionLength(section) == length
+                    && allowed(columns, layout.getSectionStart(section))) {
+                int start = (int) layout.getSectionStart(section);
+                markUsed(start, length);
+                return start;
+            }
+        }
+        return -1;
+    }
+    
+    public synchronized void release(long offset, int length) {
+        int start = (int) offset;
+        int end = Math.min(totalBlocks, start + length);
+        for (int pos = start; pos < end; ) {
+            int section = layout.getSectionIndex(pos);
+            int sectionEnd = (int) Math.min(end, layout.getSectionStart(section) + layout.getSectionLength(section));
+            freeCount[section] += used.get(pos, sectionEnd).cardinality();
+            staleRuns.set(section);
+            pos = sectionEnd;
+        }
+        used.clear(start, end);
+    }
+    
+    /**
+     * Take in the blocks of a grown layout. Existing offsets must be unchanged (rows appended
+     * along z); the new sections start out free.
+     */
+    public synchronized void grow(AreaLayout grown) {
+        int sections = grown.getSectionCount();
+        int oldSections = freeCount.length;
+        freeCount = Arrays.copyOf(freeCount, sections);
+        largestRun = Arrays.copyOf(largestRun, sections);
+        for (int section = oldSections; section < sections; section++) {
+            freeCount[section] = grown.getSectionLength(section);
+            largestRun[section] = freeCount[section];
+        }
+        layout = grown;
+        totalBlocks = grown.getTotalBlocks();
+    }
+    
+    /**
+     * Runs of blocks in use as {start, length} pairs, lowest first
+     */
+    public synchronized List<long[]> getUsedRuns() {
+        List<long[]> runs = new ArrayList<>();
+        for (int start = used.nextSetBit(0); start >= 0; ) {
+            int end = used.nextClearBit(start);
+            runs.add(new long[] {start, end - start});
+            start = used.nextSetBit(end);
+        }
+        return runs;
+    }
+    
+    /**
+     * Mark every block free
+     */
+    public synchronized void clear() {
+        reset();
+    }
+    
+    /**
+     * One past the highest block in use; space above it is free
+     */
+    public synchronized long getHighWaterMark() {
+        return used.length();
+    }
+    
+    public synchronized long getFreeBlocks() {
+        return totalBlocks - used.cardinality();
+    }
+    
+    /**
+     * Placement counts: [within one section, within one chunk column, spanning chunks]
+     */
+    public synchronized long[] getPlacementCounts() {
+        return new long[] { sectionPlacements, columnPlacements, spanningPlacements };
+    }
+    
+    // Placement policies
+    
+    /**
+     * Best fit among sections: the section with the smallest largest-free-run that still fits
+     */
+    private int allocateInSection(int length, IntPredicate columns) {
+        int best = -1;
+        int bestRun = Integer.MAX_VALUE;
+        
+        for (int section = 0; section < freeCount.length; section++) {
+            if (freeCount[section] < length || !allowed(columns, layout.getSectionStart(section))) {
+                continue;
+            }
+            int run = largestRun(section);
+            if (run >= length && run < bestRun) {
+                best = section;
+                bestRun = run;
+                if (run == length) {
+                    break;
+                }
+            }
+        }
+        
+        if (best < 0) {
+            return -1;
+        }
+        int start = (int) layout.getSectionStart(best);
+        return findRun(start, start + layout.getSectionLength(best), length);
+    }
+    
+    private int allocateInColumn(int length, IntPredicate columns) {
+        int columnSize = layout.getColumnSize();
+        if (length > columnSize) {
+            return -1;
+        }
+        
+        for (int start = 0; start < totalBlocks; start += columnSize) {
+            if (!allowed(columns, start)) {
+                continue;
+            }
+            int offset = findRun(start, start + columnSize, length);
+            if (offset >= 0) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * First free run across chunk columns whose columns are all allowed
+     */
+    private int findSpanningRun(int length, IntPredicate columns) {
+        if (columns == null) {
+            return findRun(0, totalBlocks, length);
+        }
+        
+        int columnSize = layout.getColumnSize();
+        int from = 0;
+        while (from < totalBlocks) {
+            // Extend a stretch of consecutive allowed columns and search within it
+            while (from < totalBlocks && !allowed(columns, from)) {
+                from += columnSize;
+            }
+            int to = from;
+            while (to < totalBlocks && allowed(columns, to)) {
+                to += columnSize;
+            }
+            int offset = to > from ? findRun(from, to, length) : -1;
+            if (offset >= 0) {
+                return offset;
+            }
+            from = to;
+        }
+        return -1;
+    }
+    
+    private boolean allowed(IntPredicate columns, long offset) {
+        return columns == null || columns.test(layout.getColumnIndex(offset));
+    }
+    
+    /**
+     * First free run of the given length within [from, to), or -1
+     */
+    private int findRun(int from, int to, int length) {
+        int pos = from;
+        while (pos + length <= to) {
+            int free = used.nextClearBit(pos);
+            if (free + length > to) {
+                return -1;
+            }
+            int next = used.nextSetBit(free);
+            if (next < 0 || next >= free + length) {
+                return free;
+            }
+            pos = next;
+        }
+        return -1;
+    }
+    
+    // Summaries
+    
+    private void markUsed(int offset, int length) {
+        int end = offset + length;
+        for (int pos = offset; pos < end; ) {
+            int section = layout.getSectionIndex(pos);
+            int sectionEnd = (int) Math.min(end, layout.getSectionStart(section) + layout.getSectionLength(section));
+            freeCount[section] -= (sectionEnd - pos) - used.get(pos, sectionEnd).cardinality();
+            staleRuns.set(section);
+            pos = sectionEnd;
+        }
+        used.set(offset, end);
+    }
+    
+    private int largestRun(int section) {
+        if (!staleRuns.get(section)) {
+            return largestRun[section];
+        }
+        
+        int start = (int) layout.getSectionStart(section);
+        int end = start + layout.getSectionLength(section);
+        int largest = 0;
+        int pos = start;
+        while (pos < end) {
+            int free = used.nextClearBit(pos);
+            if (free >= end) {
+                break;
+            }
+            int next = used.nextSetBit(free);
+            int runEnd = next < 0 || next > end ? end : next;
+            largest = Math.max(largest, runEnd - free);
+            pos = runEnd;
+        }
+        
+        largestRun[section] = largest;
+        staleRuns.clear(section);
+        return largest;
+    }
+    
+    private void reset() {
+        used.clear();
+        staleRuns.clear();
+        for (int section = 0; section < freeCount.length; section++) {
+            freeCount[section] = layout.getSectionLength(section);
+            largestRun[section] = freeCount[section];
+        }
+    }
+}
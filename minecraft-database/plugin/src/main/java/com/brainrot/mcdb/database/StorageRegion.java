@@ -0,0 +1,157 @@
+package com.brainrot.mcdb.database;
+
+import com.brainrot.mcdb.models.CacheStats;
+import com.brainrot.mcdb.models.DataAddress;
+import com.brainrot.mcdb.models.Namespace;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One namespace's share of the database area: a y band of the storage volume with its own
+ * allocator, slabs, index shard, key filter, cache and counters.
+ *
+ * Keys are routed to a region by prefix, so bulk traffic in one namespace (e.g. reel syncs)
+ * never fragments, fills or evicts the cache of another.
+ */
+public class StorageRegion {
+    
+    private final Namespace namespace;
+    private volatile AreaLayout layout;
+    private final SpaceAllocator allocator;
+    private final SlabAllocator slabs;
+    private final CompactIndex index;
+    private final KeyFilter keyFilter;
+    private final ValueCache cache;
+    
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong deletes = new AtomicLong();
+    
+    public StorageRegion(Namespace namespace, AreaLayout layout, long cacheTtlMillis) {
+        this.namespace = namespace;
+        this.layout = layout;
+        this.allocator = new SpaceAllocator(layout);
+        this.slabs = new SlabAllocator(allocator, layout);
+        this.index = new CompactIndex(layout);
+        this.keyFilter = new KeyFilter(namespace.getCacheSize());
+        this.cache = new ValueCache(namespace.getCacheSize(), namespace.getCacheMaxBytes(), cacheTtlMillis);
+    }
+    
+    public String getName() {
+        return namespace.getName();
+    }
+    
+    public Namespace getNamespace() {
+        return namespace;
+    }
+    
+    public boolean matches(String key) {
+        return namespace.matches(key);
+    }
+    
+    /**
+     * Whether a scan for the prefix may return keys stored in this region
+     */
+    public boolean overlaps(String prefix) {
+        return prefix == null || prefix.startsWith(namespace.getPrefix()) || namespace.getPrefix().startsWith(prefix);
+    }
+    
+    /**
+     * Index entry for a key, checking the key filter first
+     */
+    DataAddress lookup(String key) {
+        return keyFilter.mightContain(key) ? index.get(key) : null;
+    }
+    
+    AreaLayout getLayout() {
+        return layout;
+    }
+    
+    SpaceAllocator getAllocator() {
+        return allocator;
+    }
+    
+    CompactIndex getIndex() {
+        return index;
+    }
+    
+    KeyFilter getKeyFilter() {
+        return keyFilter;
+    }
+    
+    ValueCache getCache() {
+        return cache;
+    }
+    
+    public SlabAllocator getSlabAllocator() {
+        return slabs;
+    }
+    
+    /**
+     * Take in chunk rows appended to the area. The index keeps its layout: both map offsets
+     * the same way, only the bounds differ.
+     */
+    void grow(AreaLayout area) {
+        AreaLayout grown = area.slice(namespace.getMinY(), namespace.getMaxY());
+        allocator.grow(grown);
+        slabs.grow(grown);
+        layout = grown;
+    }
+    
+    /**
+     * Drop every entry. Blocks in use stay reserved in the allocator; the caller wipes them
+     * and releases each run, so nothing is placed on a run before it is cleared.
+     */
+    void clear() {
+        index.clear();
+        keyFilter.clear();
+        cache.clear();
+        slabs.clear();
+    }
+    
+    void recordRead() {
+        reads.incrementAndGet();
+    }
+    
+    void recordWrite() {
+        writes.incrementAndGet();
+    }
+    
+    void recordDelete() {
+        deletes.incrementAndGet();
+    }
+    
+    // Statistics
+    
+    public int getEntryCount() {
+        return index.size();
+    }
+    
+    public int getTotalBlocks() {
+        return layout.getTotalBlocks();
+    }
+    
+    public long getFreeBlocks() {
+        return allocator.getFreeBlocks();
+    }
+    
+    public long getIndexMemoryBytes() {
+        return index.getMemoryBytes();
+    }
+    
+    public CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+    
+    public long getReads() {
+        return reads.get();
+    }
+    
+    public long getWrites() {
+        return writes.get();
+    }
+    
+    public long getDeletes() {
+        return deletes.get();
+    }
+}
@@ -0,0 +1,87 @@
+package com.brainrot.mcdb.database;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks picked by key hash, used to serialize changes to the same key.
+ *
+ * Writers to different keys almost never share a stripe, so they only meet on the allocator of
+ * the region they place blocks in. Acquisitions that had to wait are counted, with the time
+ * spent waiting, so contention shows up in STATS.
+ */
+public class StripedLocks {
+    
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    
+    public StripedLocks(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+    
+    /**
+     * Lock the stripe for a key, returning it for unlocking
+     */
+    public ReentrantLock lock(String key) {
+        int hash = key.hashCode();
+        ReentrantLock stripe = stripes[(hash ^ (hash >>> 16)) & mask];
+        acquire(stripe);
+        return stripe;
+    }
+    
+    /**
+     * Lock every stripe in order, for operations that touch all keys
+     */
+    public void lockAll() {
+        for (ReentrantLock stripe : stripes) {
+            acquire(stripe);
+        }
+    }
+    
+    public void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+    
+    private void acquire(ReentrantLock stripe) {
+        acquisitions.incrementAndGet();
+        if (stripe.tryLock()) {
+            return;
+        }
+        
+        contended.incrementAndGet();
+        long start = System.nanoTime();
+        stripe.lock();
+        waitNanos.addAndGet(System.nanoTime() - start);
+    }
+    
+    public int getStripeCount() {
+        return stripes.length;
+    }
+    
+    public long getAcquisitions() {
+        return acquisitions.get();
+    }
+    
+    /**
+     * Acquisitions that found the stripe held and had to wait
+     */
+    public long getContended() {
+        return contended.get();
+    }
+    
+    public long getWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+}
@@ -0,0 +1,332 @@
+package com.brainrot.mcdb.database;
+
+import com.brainrot.mcdb.models.CacheStats;
+import com.brainrot.mcdb.models.DataEntry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Segmented LRU cache for decoded values, bounded by entry count and total value bytes.
+ *
+ * New entries enter a probation segment and are promoted to the protected segment on their
+ * second hit, so one-off reads (e.g. a SCAN over cold keys) can't flush the hot set.
+ * Lookups, admission and eviction are all O(1). Expiry is tracked by a hashed timer wheel
+ * that is advanced incrementally, so no operation ever sweeps the whole cache.
+ */
+public class ValueCache {
+    
+    // Share of the capacity reserved for entries that have been hit more than once
+    private static final double PROTECTED_RATIO = 0.8;
+    
+    // Approximate per-entry overhead (node, map entry, key) counted towards the byte bound
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    
+    private static final int WHEEL_SLOTS = 256;
+    
+    private static final class Node {
+        final String key;
+        DataEntry value;
+        long weight;
+        long expiresAt;
+        boolean protectedSegment;
+        
+        // Segment list links
+        Node prev;
+        Node next;
+        
+        // Timer wheel links
+        Node wheelPrev;
+        Node wheelNext;
+        int wheelSlot = -1;
+        
+        Node(String key) {
+            this.key = key;
+        }
+    }
+    
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long defaultTtlMillis;
+    private final long wheelResolutionMillis;
+    
+    private final Map<String, Node> nodes;
+    private final Node probation;
+    private final Node protectedHead;
+    private final Node[] wheel;
+    
+    private int protectedCount;
+    private long protectedBytes;
+    private long totalBytes;
+    private long wheelTick;
+    
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    
+    public ValueCache(int maxEntries, long maxBytes, long defaultTtlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.defaultTtlMillis = Math.max(1, defaultTtlMillis);
+        this.wheelResolutionMillis = Math.max(100, this.defaultTtlMillis / 64);
+        this.nodes = new HashMap<>();
+        this.probation = sentinel();
+        this.protectedHead = sentinel();
+        this.wheel = new Node[WHEEL_SLOTS];
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel[i] = sentinel();
+        }
+        this.wheelTick = System.currentTimeMillis() / wheelResolutionMillis;
+    }
+    
+    /**
+     * Get a cached value, or null on a miss or if it has expired
+     */
+    public synchronized DataEntry get(String key) {
+        long now = System.currentTimeMillis();
+        Node node = nodes.get(key);
+        
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        
+        if (node.expiresAt <= now) {
+            remove(node);
+            expirations++;
+            misses++;
+            return null;
+        }
+        
+        hits++;
+        if (node.protectedSegment) {
+            moveToFront(protectedHead, node);
+        } else {
+            promote(node);
+        }
+        return node.value;
+    }
+    
+    /**
+     * Whether a live entry expires within the given window. Doesn't count as an access.
+     */
+    public synchronized boolean isExpiringSoon(String key, long withinMillis) {
+        Node node = nodes.get(key);
+        return node != null && node.expiresAt - System.currentTimeMillis() <= withinMillis;
+    }
+    
+    /**
+     * Cache a value with the default TTL
+     */
+    public void put(String key, DataEntry value) {
+        put(key, value, defaultTtlMillis);
+    }
+    
+    /**
+     * Cache a value with its own TTL
+     */
+    public synchronized void put(String key, DataEntry value, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        long weight = (long) value.getSize() + key.length() + ENTRY_OVERHEAD_BYTES;
+        
+        Node node = nodes.get(key);
+        if (weight > maxBytes) {
+            // Too large to ever fit - don't let it flush everything else
+            if (node != null) {
+                remove(node);
+            }
+            return;
+        }
+        
+        if (node == null) {
+            node = new Node(key);
+            nodes.put(key, node);
+            linkFirst(probation, node);
+        } else {
+            unscheduleExpiry(node);
+            adjustWeight(node, -node.weight);
+            moveToFront(node.protectedSegment ? protectedHead : probation, node);
+        }
+        
+        node.value = value;
+        node.expiresAt = now + ttlMillis;
+        adjustWeight(node, weight);
+        scheduleExpiry(node);
+        
+        expire(now);
+        evictIfNeeded();
+    }
+    
+    /**
+     * Drop a key from the cache
+     */
+    public synchronized void invalidate(String key) {
+        Node node = nodes.get(key);
+        if (node != null) {
+            remove(node);
+        }
+    }
+    
+    public synchronized void clear() {
+        nodes.clear();
+        unlinkAll(probation);
+        unlinkAll(protectedHead);
+        for (Node slot : wheel) {
+            slot.wheelNext = slot;
+            slot.wheelPrev = slot;
+        }
+        protectedCount = 0;
+        protectedBytes = 0;
+        totalBytes = 0;
+    }
+    
+    /**
+     * Number of live entries (expired ones are dropped first)
+     */
+    public synchronized int size() {
+        expire(System.currentTimeMillis());
+        return nodes.size();
+    }
+    
+    public synchronized CacheStats getStats() {
+        expire(System.currentTimeMillis());
+        return new CacheStats(nodes.size(), totalBytes, maxEntries, maxBytes, hits, misses, evictions, expirations);
+    }
+    
+    // Segment management
+    
+    private void promote(Node node) {
+        unlink(node);
+        node.protectedSegment = true;
+        protectedCount++;
+        protectedBytes += node.weight;
+        linkFirst(protectedHead, node);
+        
+        // Demote the coldest protected entries back to probation
+        long protectedMaxBytes = (long) (maxBytes * PROTECTED_RATIO);
+        int protectedMaxEntries = Math.max(1, (int) (maxEntries * PROTECTED_RATIO));
+        while ((protectedCount > protectedMaxEntries || protectedBytes > protectedMaxBytes)
+                && protectedHead.prev != node) {
+            Node demoted = protectedHead.prev;
+            unlink(demoted);
+            demoted.protectedSegment = false;
+            protectedCount--;
+            protectedBytes -= demoted.weight;
+            linkFirst(probation, demoted);
+        }
+    }
+    
+    private void evictIfNeeded() {
+        while (nodes.size() > maxEntries || totalBytes > maxBytes) {
+            Node victim = probation.prev != probation ? probation.prev : protectedHead.prev;
+            if (victim == protectedHead) {
+                return;
+            }
+            remove(victim);
+            evictions++;
+        }
+    }
+    
+    private void remove(Node node) {
+        nodes.remove(node.key);
+        unlink(node);
+        unscheduleExpiry(node);
+        adjustWeight(node, -node.weight);
+        if (node.protectedSegment) {
+            protectedCount--;
+            node.protectedSegment = false;
+        }
+    }
+    
+    private void adjustWeight(Node node, long delta) {
+        node.weight += delta;
+        totalBytes += delta;
+        if (node.protectedSegment) {
+            protectedBytes += delta;
+        }
+    }
+    
+    // Timer wheel
+    
+    private void scheduleExpiry(Node node) {
+        int slot = (int) Math.floorMod(node.expiresAt / wheelResolutionMillis, (long) WHEEL_SLOTS);
+        Node head = wheel[slot];
+        node.wheelSlot = slot;
+        node.wheelNext = head.wheelNext;
+        node.wheelPrev = head;
+        head.wheelNext.wheelPrev = node;
+        head.wheelNext = node;
+    }
+    
+    private void unscheduleExpiry(Node node) {
+        if (node.wheelSlot < 0) {
+            return;
+        }
+        node.wheelPrev.wheelNext = node.wheelNext;
+        node.wheelNext.wheelPrev = node.wheelPrev;
+        node.wheelPrev = null;
+        node.wheelNext = null;
+        node.wheelSlot = -1;
+    }
+    
+    /**
+     * Advance the wheel to now, dropping expired entries from the slots that have passed.
+     * Entries scheduled a full rotation or more ahead stay in their slot.
+     */
+    private void expire(long now) {
+        long currentTick = now / wheelResolutionMillis;
+        long steps = Math.min(currentTick - wheelTick, WHEEL_SLOTS - 1);
+        
+        for (long tick = currentTick - steps; tick <= currentTick; tick++) {
+            Node head = wheel[(int) Math.floorMod(tick, (long) WHEEL_SLOTS)];
+            Node node = head.wheelNext;
+            while (node != head) {
+                Node next = node.wheelNext;
+                if (node.expiresAt <= now) {
+                    remove(node);
+                    expirations++;
+                }
+                node = next;
+            }
+        }
+        wheelTick = currentTick;
+    }
+    
+    // Linked list helpers
+    
+    private static Node sentinel() {
+        Node node = new Node(null);
+        node.prev = node;
+        node.next = node;
+        node.wheelPrev = node;
+        node.wheelNext = node;
+        return node;
+    }
+    
+    private static void linkFirst(Node head, Node node) {
+        node.next = head.next;
+        node.prev = head;
+        head.next.prev = node;
+        head.next = node;
+    }
+    
+    private static void unlink(Node node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+    
+    private static void moveToFront(Node head, Node node) {
+        unlink(node);
+        linkFirst(head, node);
+    }
+    
+    private static void unlinkAll(Node head) {
+        head.next = head;
+        head.prev = head;
+    }
+}
@@ -0,0 +1,37 @@
+package com.brainrot.mcdb.database;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a conditional write finds a different version than the caller expected
+ */
+public class VersionConflictException extends IOException {
+    
+    private final String key;
+    private final long expectedVersion;
+    private final long currentVersion;
+    
+    public VersionConflictException(String key, long expectedVersion, long currentVersion) {
+        super(currentVersion == 0
+            ? "Version conflict for " + key + ": key does not exist"
+            : "Version conflict for " + key + ": expected " + expectedVersion + " but found " + currentVersion);
+        this.key = key;
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+    
+    public String getKey() {
+        return key;
+    }
+    
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+    
+    /**
+     * Version currently stored, 0 if the key does not exist
+     */
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,77 @@
+package com.brainrot.mcdb.models;
+
+public class CacheStats {
+    
+    private final int entries;
+    private final long bytes;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    
+    public CacheStats(int entries, long bytes, int maxEntries, long maxBytes,
+                      long hits, long misses, long evictions, long expirations) {
+        this.entries = entries;
+        this.bytes = bytes;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+    }
+    
+    public int getEntries() {
+        return entries;
+    }
+    
+    public long getBytes() {
+        return bytes;
+    }
+    
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+    
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    public long getHits() {
+        return hits;
+    }
+    
+    public long getMisses() {
+        return misses;
+    }
+    
+    public long getEvictions() {
+        return evictions;
+    }
+    
+    public long getExpirations() {
+        return expirations;
+    }
+    
+    /**
+     * Hit rate as a percentage of all lookups
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups > 0 ? hits * 100.0 / lookups : 0;
+    }
+    
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "entries=" + entries +
+                ", bytes=" + bytes +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                ", expirations=" + expirations +
+                '}';
+    }
+}
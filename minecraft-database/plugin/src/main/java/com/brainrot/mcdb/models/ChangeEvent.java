@@ -0,0 +1,58 @@
+package com.brainrot.mcdb.models;
+
+public class ChangeEvent {
+    
+    public enum Operation {
+        WRITE,
+        APPEND,
+        PATCH,
+        DELETE,
+        CLEAR
+    }
+    
+    private final String key;
+    private final Operation operation;
+    private final long version;
+    private final byte[] value;
+    private final long timestamp;
+    
+    public ChangeEvent(String key, Operation operation, long version, byte[] value) {
+        this.key = key;
+        this.operation = operation;
+        this.version = version;
+        this.value = value;
+        this.timestamp = System.currentTimeMillis();
+    }
+    
+    public String getKey() {
+        return key;
+    }
+    
+    public Operation getOperation() {
+        return operation;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * New value for WRITE events, null otherwise (APPEND/PATCH subscribers re-read the key)
+     */
+    public byte[] getValue() {
+        return value;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    @Override
+    public String toString() {
+        return "ChangeEvent{" +
+                "key='" + key + '\'' +
+                ", op=" + operation +
+                ", version=" + version +
+                '}';
+    }
+}
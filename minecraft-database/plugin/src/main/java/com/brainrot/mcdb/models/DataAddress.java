@@ -1,17 +1,43 @@
 package com.brainrot.mcdb.models;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class DataAddress {
     
     private final int chunkX;
     private final int chunkZ;
     private final BlockPosition blockPosition;
     private final int blockCount;
+    private final long version;
+    private final boolean compressed;
+    private final List<Extent> extents;
+    private final long fingerprint;
+    private final int valueSize;
+    
+    public DataAddress(int chunkX, int chunkZ, BlockPosition blockPosition, int blockCount, long version,
+                       boolean compressed, long fingerprint, int valueSize) {
+        this(chunkX, chunkZ, Collections.singletonList(new Extent(blockPosition, blockCount)), version,
+            compressed, fingerprint, valueSize);
+    }
     
-    public DataAddress(int chunkX, int chunkZ, BlockPosition blockPosition, int blockCount) {
+    public DataAddress(int chunkX, int chunkZ, List<Extent> extents, long version, boolean compressed,
+                       long fingerprint, int valueSize) {
         this.chunkX = chunkX;
         this.chunkZ = chunkZ;
-        this.blockPosition = blockPosition;
-        this.blockCount = blockCount;
+        this.extents = Collections.unmodifiableList(new ArrayList<>(extents));
+        this.blockPosition = extents.get(0).getStart();
+        this.version = version;
+        this.compressed = compressed;
+        this.fingerprint = fingerprint;
+        this.valueSize = valueSize;
+        
+        int total = 0;
+        for (Extent extent : extents) {
+            total += extent.getLength();
+        }
+        this.blockCount = total;
     }
     
     public int getChunkX() {
@@ -22,21 +48,69 @@ public class DataAddress {
         return chunkZ;
     }
     
+    /**
+     * Start of the first extent
+     */
     public BlockPosition getBlockPosition() {
         return blockPosition;
     }
     
+    /**
+     * Total number of blocks across all extents
+     */
     public int getBlockCount() {
         return blockCount;
     }
     
+    /**
+     * Commit sequence number of the write that produced this entry
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Whether the stored bytes are GZIP compressed (raw entries can be patched in place)
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+    
+    /**
+     * Fingerprint of the raw value, 0 if unknown
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+    
+    /**
+     * Size of the raw value in bytes
+     */
+    public int getValueSize() {
+        return valueSize;
+    }
+    
+    /**
+     * Block runs holding the entry, in value order
+     */
+    public List<Extent> getExtents() {
+        return extents;
+    }
+    
+    public Extent getLastExtent() {
+        return extents.get(extents.size() - 1);
+    }
+    
     @Override
     public String toString() {
         return "DataAddress{" +
                 "chunk=(" + chunkX + ", " + chunkZ + ")" +
                 ", position=" + blockPosition +
                 ", blocks=" + blockCount +
+                ", extents=" + extents.size() +
+                ", version=" + version +
+                ", compressed=" + compressed +
+                ", size=" + valueSize +
                 '}';
     }
 }
-
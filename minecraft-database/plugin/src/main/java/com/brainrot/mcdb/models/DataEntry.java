@@ -8,12 +8,22 @@ public class DataEntry {
     private final byte[] value;
     private final long timestamp;
     private final BlockPosition startPosition;
+    private final long version;
     
     public DataEntry(String key, byte[] value, BlockPosition startPosition) {
+        this(key, value, startPosition, 0);
+    }
+    
+    /**
+     * Entry for a value at a known index version, so the value and its version are always
+     * handed out together
+     */
+    public DataEntry(String key, byte[] value, BlockPosition startPosition, long version) {
         this.key = key;
         this.value = value;
         this.timestamp = System.currentTimeMillis();
         this.startPosition = startPosition;
+        this.version = version;
     }
     
     public DataEntry(String key, byte[] value, long timestamp, BlockPosition startPosition) {
@@ -21,6 +31,7 @@ public class DataEntry {
         this.value = value;
         this.timestamp = timestamp;
         this.startPosition = startPosition;
+        this.version = 0;
     }
     
     public String getKey() {
@@ -39,6 +50,13 @@ public class DataEntry {
         return startPosition;
     }
     
+    /**
+     * Index version the value was read or written at, 0 if unknown
+     */
+    public long getVersion() {
+        return version;
+    }
+    
     public int getSize() {
         return value != null ? value.length : 0;
     }
@@ -50,6 +68,7 @@ public class DataEntry {
                 ", size=" + getSize() +
                 ", timestamp=" + timestamp +
                 ", position=" + startPosition +
+                ", version=" + version +
                 '}';
     }
     
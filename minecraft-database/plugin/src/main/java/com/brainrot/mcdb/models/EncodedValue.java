@@ -0,0 +1,40 @@
+package com.brainrot.mcdb.models;
+
+import org.bukkit.Material;
+
+import java.util.List;
+
+/**
+ * A value already encoded (and possibly compressed) into block symbols, ready to be placed.
+ * Encoding doesn't touch the world or the index, so it can be done before taking any lock.
+ */
+public class EncodedValue {
+    
+    private final byte[] value;
+    private final List<Material> blocks;
+    private final boolean compressed;
+    private final long fingerprint;
+    
+    public EncodedValue(byte[] value, List<Material> blocks, boolean compressed, long fingerprint) {
+        this.value = value;
+        this.blocks = blocks;
+        this.compressed = compressed;
+        this.fingerprint = fingerprint;
+    }
+    
+    public byte[] getValue() {
+        return value;
+    }
+    
+    public List<Material> getBlocks() {
+        return blocks;
+    }
+    
+    public boolean isCompressed() {
+        return compressed;
+    }
+    
+    public long getFingerprint() {
+        return fingerprint;
+    }
+}
@@ -0,0 +1,28 @@
+package com.brainrot.mcdb.models;
+
+/**
+ * A contiguous run of blocks in database scan order
+ */
+public class Extent {
+    
+    private final BlockPosition start;
+    private final int length;
+    
+    public Extent(BlockPosition start, int length) {
+        this.start = start;
+        this.length = length;
+    }
+    
+    public BlockPosition getStart() {
+        return start;
+    }
+    
+    public int getLength() {
+        return length;
+    }
+    
+    @Override
+    public String toString() {
+        return start + "+" + length;
+    }
+}
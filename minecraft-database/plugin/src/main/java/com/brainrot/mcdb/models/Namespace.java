@@ -0,0 +1,60 @@
+package com.brainrot.mcdb.models;
+
+/**
+ * A configured key namespace: keys starting with the prefix are stored in their own y band of
+ * the database area, with their own cache quota
+ */
+public class Namespace {
+    
+    private final String name;
+    private final String prefix;
+    private final int minY;
+    private final int maxY;
+    private final int cacheSize;
+    private final long cacheMaxBytes;
+    
+    public Namespace(String name, String prefix, int minY, int maxY, int cacheSize, long cacheMaxBytes) {
+        this.name = name;
+        this.prefix = prefix;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.cacheSize = cacheSize;
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Key prefix routed to this namespace, empty for the catch-all namespace
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+    
+    public int getMinY() {
+        return minY;
+    }
+    
+    public int getMaxY() {
+        return maxY;
+    }
+    
+    public int getCacheSize() {
+        return cacheSize;
+    }
+    
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+    
+    public boolean matches(String key) {
+        return key.startsWith(prefix);
+    }
+    
+    @Override
+    public String toString() {
+        return name + " ('" + prefix + "*', Y: " + minY + "-" + maxY + ")";
+    }
+}
@@ -0,0 +1,37 @@
+package com.brainrot.mcdb.models;
+
+import java.util.List;
+
+public class ScanPage {
+    
+    private final List<String> keys;
+    private final String nextCursor;
+    
+    public ScanPage(List<String> keys, String nextCursor) {
+        this.keys = keys;
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<String> getKeys() {
+        return keys;
+    }
+    
+    /**
+     * Cursor to pass to the next scan, or null when the range is exhausted
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+    
+    @Override
+    public String toString() {
+        return "ScanPage{" +
+                "keys=" + keys.size() +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
@@ -2,18 +2,40 @@ package com.brainrot.mcdb.socket;
 
 import com.brainrot.mcdb.MinecraftDBPlugin;
 import com.brainrot.mcdb.database.BlockDatabase;
+import com.brainrot.mcdb.database.ChunkManager;
+import com.brainrot.mcdb.database.Compactor;
+import com.brainrot.mcdb.database.Fingerprint;
+import com.brainrot.mcdb.database.SlabAllocator;
+import com.brainrot.mcdb.database.StorageRegion;
+import com.brainrot.mcdb.database.StripedLocks;
+import com.brainrot.mcdb.database.VersionConflictException;
+import com.brainrot.mcdb.models.CacheStats;
+import com.brainrot.mcdb.models.DataAddress;
+import com.brainrot.mcdb.models.DataEntry;
+import com.brainrot.mcdb.models.EncodedValue;
+import com.brainrot.mcdb.models.ScanPage;
 import com.brainrot.mcdb.socket.ProtocolParser.SocketMessage;
-import org.bukkit.Bukkit;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 public class CommandHandler {
     
+    // Default page sizes for SCAN (values make each entry much larger)
+    private static final int DEFAULT_SCAN_LIMIT = 100;
+    private static final int MAX_SCAN_VALUES_LIMIT = 100;
+    private static final int DEFAULT_FINGERPRINT_LIMIT = 1000;
+    
     private final MinecraftDBPlugin plugin;
     private final BlockDatabase database;
     
@@ -23,27 +45,11 @@ public class CommandHandler {
     }
     
     /**
-     * Execute a task on the main server thread and wait for result
+     * Execute a task on the thread owning the key's chunks and wait for result
      */
-    private <T> T runOnMainThread(java.util.function.Supplier<T> task) throws Exception {
-        if (Bukkit.isPrimaryThread()) {
-            // Already on main thread
-            return task.get();
-        }
-        
-        CompletableFuture<T> future = new CompletableFuture<>();
-        
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            try {
-                T result = task.get();
-                future.complete(result);
-            } catch (Exception e) {
-                future.completeExceptionally(e);
-            }
-        });
-        
+    private <T> T runForKey(String key, java.util.function.Supplier<T> task) throws Exception {
         // Wait for completion (with timeout)
-        return future.get(25, TimeUnit.SECONDS);
+        return database.supplyForKey(key, task).get(25, TimeUnit.SECONDS);
     }
     
     /**
@@ -62,11 +68,26 @@ public class CommandHandler {
             
             String command = message.command.toUpperCase();
             
+            // Requests wait for warmup unless configured to fail fast
+            if (!database.isReady() && !command.equals("STATS") && plugin.getConfigManager().rejectWhileWarming()) {
+                ChunkManager chunks = plugin.getChunkManager();
+                return ProtocolParser.createErrorResponse(message.id, command, "Database is warming up ("
+                    + chunks.getLoadedChunkCount() + "/" + chunks.getTotalChunkCount() + " chunks loaded)");
+            }
+            
             // Route to appropriate handler
             switch (command) {
                 case "WRITE":
                     return handleWrite(message);
                     
+                case "CAS":
+                case "WRITE_IF_ABSENT":
+                    return handleConditionalWrite(message, command);
+                    
+                case "APPEND":
+                case "PATCH":
+                    return handleMutation(message, command);
+                    
                 case "READ":
                     return handleRead(message);
                     
@@ -76,6 +97,12 @@ public class CommandHandler {
                 case "LIST":
                     return handleList(message);
                     
+                case "SCAN":
+                    return handleScan(message);
+                    
+                case "FINGERPRINTS":
+                    return handleFingerprints(message);
+                    
                 case "EXISTS":
                     return handleExists(message);
                     
@@ -107,11 +134,24 @@ public class CommandHandler {
                 return ProtocolParser.createErrorResponse(message.id, "WRITE", "Missing value");
             }
             
-            // Write to database on main thread
-            runOnMainThread(() -> {
+            // Identical content is already stored - answer without a thread hop
+            DataAddress existing = database.getAddress(message.key);
+            if (database.isUnchanged(existing, message.value)) {
+                Map<String, Object> data = new HashMap<>();
+                data.put("key", message.key);
+                data.put("size", message.value.length);
+                data.put("version", existing.getVersion());
+                data.put("unchanged", true);
+                data.put("message", "Data unchanged");
+                
+                return ProtocolParser.createSuccessResponse(message.id, "WRITE", data);
+            }
+            
+            // Encode and compress on this connection's thread, place blocks on the owning thread
+            EncodedValue encoded = database.encode(message.value);
+            long version = runForKey(message.key, () -> {
                 try {
-                    database.write(message.key, message.value);
-                    return null;
+                    return database.write(message.key, encoded);
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
@@ -121,6 +161,7 @@ public class CommandHandler {
             Map<String, Object> data = new HashMap<>();
             data.put("key", message.key);
             data.put("size", message.value.length);
+            data.put("version", version);
             data.put("message", "Data written successfully");
             
             return ProtocolParser.createSuccessResponse(message.id, "WRITE", data);
@@ -130,29 +171,173 @@ public class CommandHandler {
         }
     }
     
-    private String handleRead(SocketMessage message) {
+    /**
+     * Conditional write: CAS requires the given version, WRITE_IF_ABSENT requires no entry.
+     * The version is checked before hopping to the owning thread, so stale writers fail fast,
+     * and checked again atomically inside the database before anything is placed.
+     */
+    private String handleConditionalWrite(SocketMessage message, String command) {
         try {
             if (message.key == null || message.key.isEmpty()) {
-                return ProtocolParser.createErrorResponse(message.id, "READ", "Missing key");
+                return ProtocolParser.createErrorResponse(message.id, command, "Missing key");
             }
             
-            // Read from database on main thread
-            byte[] value = runOnMainThread(() -> {
+            if (message.value == null) {
+                return ProtocolParser.createErrorResponse(message.id, command, "Missing value");
+            }
+            
+            long expectedVersion;
+            if (command.equals("CAS")) {
+                if (message.expectedVersion == null) {
+                    return ProtocolParser.createErrorResponse(message.id, command, "Missing version");
+                }
+                expectedVersion = message.expectedVersion;
+            } else {
+                expectedVersion = 0;
+            }
+            
+            // Fail fast without a thread hop
+            long currentVersion = database.getVersion(message.key);
+            if (currentVersion != expectedVersion) {
+                return createConflictResponse(message, command,
+                    new VersionConflictException(message.key, expectedVersion, currentVersion));
+            }
+            
+            EncodedValue encoded = database.encode(message.value);
+            long version = runForKey(message.key, () -> {
                 try {
-                    return database.read(message.key);
+                    return database.compareAndWrite(message.key, expectedVersion, encoded);
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
             });
             
-            // Encode value as base64
-            String encodedValue = Base64.getEncoder().encodeToString(value);
+            Map<String, Object> data = new HashMap<>();
+            data.put("key", message.key);
+            data.put("size", message.value.length);
+            data.put("version", version);
+            data.put("message", "Data written successfully");
+            
+            return ProtocolParser.createSuccessResponse(message.id, command, data);
+            
+        } catch (Exception e) {
+            VersionConflictException conflict = findCause(e, VersionConflictException.class);
+            if (conflict != null) {
+                return createConflictResponse(message, command, conflict);
+            }
+            return ProtocolParser.createErrorResponse(message.id, command, e.getMessage());
+        }
+    }
+    
+    /**
+     * Partial update: APPEND adds bytes to the tail, PATCH overwrites bytes at an offset.
+     * Only the affected blocks are placed instead of rewriting the whole entry.
+     */
+    private String handleMutation(SocketMessage message, String command) {
+        try {
+            if (message.key == null || message.key.isEmpty()) {
+                return ProtocolParser.createErrorResponse(message.id, command, "Missing key");
+            }
+            
+            if (message.value == null) {
+                return ProtocolParser.createErrorResponse(message.id, command, "Missing value");
+            }
+            
+            if (command.equals("PATCH") && message.offset == null) {
+                return ProtocolParser.createErrorResponse(message.id, command, "Missing offset");
+            }
+            
+            long version = runForKey(message.key, () -> {
+                try {
+                    if (command.equals("APPEND")) {
+                        return database.append(message.key, message.value);
+                    }
+                    return database.patch(message.key, message.offset, message.value);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            if (version == 0) {
+                return ProtocolParser.createNotFoundResponse(message.id, command, message.key);
+            }
+            
+            Map<String, Object> data = new HashMap<>();
+            data.put("key", message.key);
+            data.put("size", message.value.length);
+            data.put("version", version);
+            if (message.offset != null) {
+                data.put("offset", message.offset);
+            }
+            
+            return ProtocolParser.createSuccessResponse(message.id, command, data);
+            
+        } catch (Exception e) {
+            return ProtocolParser.createErrorResponse(message.id, command, e.getMessage());
+        }
+    }
+    
+    private String createConflictResponse(SocketMessage message, String command, VersionConflictException conflict) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("key", conflict.getKey());
+        data.put("conflict", true);
+        data.put("expected_version", conflict.getExpectedVersion());
+        data.put("current_version", conflict.getCurrentVersion());
+        
+        return ProtocolParser.createErrorResponse(message.id, command, conflict.getMessage(), data);
+    }
+    
+    /**
+     * Find an exception of the given type in a cause chain (scheduled tasks wrap their errors)
+     */
+    private static <E extends Throwable> E findCause(Throwable error, Class<E> type) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) {
+                return type.cast(t);
+            }
+        }
+        return null;
+    }
+    
+    private String handleRead(SocketMessage message) {
+        try {
+            if (message.key == null || message.key.isEmpty()) {
+                return ProtocolParser.createErrorResponse(message.id, "READ", "Missing key");
+            }
+            
+            // Off-heap hits are base64 encoded straight from the slab into the response
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            long version;
+            try (OutputStream encoder = Base64.getEncoder().wrap(buffer)) {
+                version = database.readCached(message.key, encoder);
+            }
+            String encodedValue = buffer.toString(StandardCharsets.US_ASCII);
+            int size = decodedLength(encodedValue);
+            
+            if (version < 0) {
+                // Other cache hits are served on this thread; misses share one main-thread load
+                // per key. Value and version come from the same entry, so a CAS on this version
+                // can't overwrite a write the client hasn't seen.
+                DataEntry entry;
+                try {
+                    entry = database.readVersioned(message.key).get(25, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    return ProtocolParser.createErrorResponse(message.id, "READ", e.getCause().getMessage());
+                }
+                if (entry == null) {
+                    return ProtocolParser.createNotFoundResponse(message.id, "READ", message.key);
+                }
+                
+                encodedValue = Base64.getEncoder().encodeToString(entry.getValue());
+                size = entry.getSize();
+                version = entry.getVersion();
+            }
             
             // Prepare response data
             Map<String, Object> data = new HashMap<>();
             data.put("key", message.key);
             data.put("value", encodedValue);
-            data.put("size", value.length);
+            data.put("size", size);
+            data.put("version", version);
             
             return ProtocolParser.createSuccessResponse(message.id, "READ", data);
             
@@ -161,21 +346,37 @@ public class CommandHandler {
         }
     }
     
+    /**
+     * Byte length of a padded base64 string
+     */
+    private static int decodedLength(String base64) {
+        int padding = base64.endsWith("==") ? 2 : base64.endsWith("=") ? 1 : 0;
+        return base64.length() / 4 * 3 - padding;
+    }
+    
     private String handleDelete(SocketMessage message) {
         try {
             if (message.key == null || message.key.isEmpty()) {
                 return ProtocolParser.createErrorResponse(message.id, "DELETE", "Missing key");
             }
             
-            // Delete from database on main thread
-            runOnMainThread(() -> {
+            // Definite misses are answered without scheduling a main-thread task
+            if (!database.exists(message.key)) {
+                return ProtocolParser.createNotFoundResponse(message.id, "DELETE", message.key);
+            }
+            
+            // Delete from database on the owning thread
+            boolean deleted = runForKey(message.key, () -> {
                 try {
-                    database.delete(message.key);
-                    return null;
+                    return database.delete(message.key);
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
             });
+            if (!deleted) {
+                // Deleted by someone else after the existence check
+                return ProtocolParser.createNotFoundResponse(message.id, "DELETE", message.key);
+            }
             
             // Prepare response data
             Map<String, Object> data = new HashMap<>();
@@ -206,19 +407,113 @@ public class CommandHandler {
         }
     }
     
+    private String handleScan(SocketMessage message) {
+        try {
+            int limit = message.limit > 0 ? message.limit : DEFAULT_SCAN_LIMIT;
+            if (message.includeValues) {
+                limit = Math.min(limit, MAX_SCAN_VALUES_LIMIT);
+            }
+            
+            // Walk one page of the sorted index
+            ScanPage page = database.scan(message.prefix, message.cursor, limit);
+            
+            Map<String, Object> data = new HashMap<>();
+            data.put("count", page.getKeys().size());
+            data.put("cursor", page.getNextCursor());
+            data.put("has_more", page.hasMore());
+            
+            if (!message.includeValues) {
+                data.put("keys", page.getKeys());
+                return ProtocolParser.createSuccessResponse(message.id, "SCAN", data);
+            }
+            
+            // Start every read at once; each misses on the thread owning its entry
+            List<CompletableFuture<DataEntry>> reads = new ArrayList<>(page.getKeys().size());
+            for (String key : page.getKeys()) {
+                reads.add(database.readVersioned(key));
+            }
+            
+            List<Map<String, Object>> entries = new ArrayList<>(reads.size());
+            for (int i = 0; i < reads.size(); i++) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("key", page.getKeys().get(i));
+                try {
+                    DataEntry read = reads.get(i).get(25, TimeUnit.SECONDS);
+                    if (read != null) {
+                        entry.put("value", Base64.getEncoder().encodeToString(read.getValue()));
+                        entry.put("size", read.getValue().length);
+                        entry.put("version", read.getVersion());
+                    } else {
+                        // Deleted between scan and read
+                        entry.put("error", "Key not found: " + page.getKeys().get(i));
+                    }
+                } catch (ExecutionException e) {
+                    entry.put("error", e.getCause().getMessage());
+                }
+                entries.add(entry);
+            }
+            
+            data.put("entries", entries);
+            return ProtocolParser.createSuccessResponse(message.id, "SCAN", data);
+            
+        } catch (Exception e) {
+            return ProtocolParser.createErrorResponse(message.id, "SCAN", e.getMessage());
+        }
+    }
+    
+    /**
+     * List content fingerprints under a prefix so clients can diff without reading values
+     */
+    private String handleFingerprints(SocketMessage message) {
+        try {
+            int limit = message.limit > 0 ? message.limit : DEFAULT_FINGERPRINT_LIMIT;
+            ScanPage page = database.scanForFingerprints(message.prefix, message.cursor, limit);
+            
+            List<Map<String, Object>> entries = new ArrayList<>(page.getKeys().size());
+            for (String key : page.getKeys()) {
+                DataAddress address = database.getAddress(key);
+                if (address == null) {
+                    // Deleted since the scan
+                    continue;
+                }
+                
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("key", key);
+                entry.put("version", address.getVersion());
+                entry.put("size", address.getValueSize());
+                if (address.getFingerprint() != Fingerprint.UNKNOWN) {
+                    entry.put("fingerprint", Fingerprint.toHex(address.getFingerprint()));
+                }
+                entries.add(entry);
+            }
+            
+            Map<String, Object> data = new HashMap<>();
+            data.put("entries", entries);
+            data.put("count", entries.size());
+            data.put("cursor", page.getNextCursor());
+            data.put("has_more", page.hasMore());
+            
+            return ProtocolParser.createSuccessResponse(message.id, "FINGERPRINTS", data);
+            
+        } catch (Exception e) {
+            return ProtocolParser.createErrorResponse(message.id, "FINGERPRINTS", e.getMessage());
+        }
+    }
+    
     private String handleExists(SocketMessage message) {
         try {
             if (message.key == null || message.key.isEmpty()) {
                 return ProtocolParser.createErrorResponse(message.id, "EXISTS", "Missing key");
             }
             
-            // Check if key exists
-            boolean exists = database.exists(message.key);
+            // Existence and version from one index lookup (definite misses stop at the key filter)
+            DataAddress address = database.getAddress(message.key);
             
             // Prepare response data
             Map<String, Object> data = new HashMap<>();
             data.put("key", message.key);
-            data.put("exists", exists);
+            data.put("exists", address != null);
+            data.put("version", address != null ? address.getVersion() : 0);
             
             return ProtocolParser.createSuccessResponse(message.id, "EXISTS", data);
             
@@ -231,11 +526,90 @@ public class CommandHandler {
         try {
             // Get database statistics
             Map<String, Object> data = new HashMap<>();
+            ChunkManager chunks = plugin.getChunkManager();
+            data.put("state", database.isReady() ? "ready" : "warming");
+            data.put("chunks_loaded", chunks.getLoadedChunkCount());
+            data.put("chunks_total", chunks.getTotalChunkCount());
+            data.put("warmup_ms", chunks.getWarmupMillis());
             data.put("entries", database.getEntryCount());
             data.put("capacity", database.getEstimatedCapacity());
             data.put("used_percent", database.getUsedCapacity());
+            data.put("index_bytes", database.getIndexMemoryBytes());
+            data.put("free_blocks", database.getFreeBlocks());
+            long[] placements = database.getPlacementCounts();
+            data.put("placements_in_section", placements[0]);
+            data.put("placements_in_chunk", placements[1]);
+            data.put("placements_spanning_chunks", placements[2]);
+            
+            // Per-namespace region statistics
+            Map<String, Object> namespaces = new HashMap<>();
+            for (StorageRegion region : database.getRegions()) {
+                Map<String, Object> stats = new HashMap<>();
+                stats.put("prefix", region.getNamespace().getPrefix());
+                stats.put("min_y", region.getNamespace().getMinY());
+                stats.put("max_y", region.getNamespace().getMaxY());
+                stats.put("entries", region.getEntryCount());
+                stats.put("total_blocks", region.getTotalBlocks());
+                stats.put("free_blocks", region.getFreeBlocks());
+                stats.put("index_bytes", region.getIndexMemoryBytes());
+                stats.put("reads", region.getReads());
+                stats.put("writes", region.getWrites());
+                stats.put("deletes", region.getDeletes());
+                
+                CacheStats regionCache = region.getCacheStats();
+                stats.put("cache_entries", regionCache.getEntries());
+                stats.put("cache_max_entries", regionCache.getMaxEntries());
+                stats.put("cache_hit_rate", regionCache.getHitRate());
+                
+                SlabAllocator slabs = region.getSlabAllocator();
+                stats.put("slab_count", slabs.getSlabCount());
+                stats.put("slab_allocations", slabs.getAllocations());
+                stats.put("slab_classes", slabs.getClassSizes());
+                namespaces.put(region.getName(), stats);
+            }
+            data.put("namespaces", namespaces);
+            
+            StripedLocks keyLocks = database.getKeyLocks();
+            data.put("lock_acquisitions", keyLocks.getAcquisitions());
+            data.put("lock_contended", keyLocks.getContended());
+            data.put("lock_wait_ms", keyLocks.getWaitMillis());
+            
+            Compactor compactor = database.getCompactor();
+            data.put("compaction_state", compactor.getState());
+            data.put("compaction_progress", compactor.getProgress());
+            data.put("compaction_passes", compactor.getPasses());
+            data.put("compaction_entries_moved", compactor.getEntriesMoved());
+            data.put("compaction_blocks_moved", compactor.getBlocksMoved());
+            data.put("compaction_extents_merged", compactor.getExtentsMerged());
+            data.put("compaction_reclaimed_blocks", compactor.getReclaimedBlocks());
+            data.put("compaction_last_completed", compactor.getLastCompletedAt());
+            data.put("high_water_mark", database.getHighWaterMark());
             data.put("cache_size", database.getCacheSize());
+            
+            CacheStats cacheStats = database.getCacheStats();
+            data.put("cache_bytes", cacheStats.getBytes());
+            data.put("cache_hits", cacheStats.getHits());
+            data.put("cache_misses", cacheStats.getMisses());
+            data.put("cache_evictions", cacheStats.getEvictions());
+            data.put("cache_expirations", cacheStats.getExpirations());
+            data.put("cache_hit_rate", cacheStats.getHitRate());
+            data.put("cache_shared_loads", database.getSharedLoadCount());
+            data.put("cache_refresh_ahead_loads", database.getRefreshAheadCount());
+            data.put("key_filter_negatives", database.getFilterNegativeCount());
+            
+            CacheStats offHeapStats = database.getOffHeapCacheStats();
+            if (offHeapStats != null) {
+                data.put("offheap_cache_size", offHeapStats.getEntries());
+                data.put("offheap_cache_bytes", offHeapStats.getBytes());
+                data.put("offheap_cache_capacity_bytes", offHeapStats.getMaxBytes());
+                data.put("offheap_cache_hits", offHeapStats.getHits());
+                data.put("offheap_cache_misses", offHeapStats.getMisses());
+                data.put("offheap_cache_evictions", offHeapStats.getEvictions());
+            }
             data.put("chunks", plugin.getChunkManager().getLoadedChunkCount());
+            data.put("chunk_demand_loads", plugin.getChunkManager().getDemandLoadCount());
+            data.put("chunk_idle_unloads", plugin.getChunkManager().getIdleUnloadCount());
+            data.put("area_growth_steps", database.getGrowthSteps());
             
             return ProtocolParser.createSuccessResponse(message.id, "STATS", data);
             
@@ -11,6 +11,9 @@ public class ProtocolParser {
     
     private static final Gson gson = new Gson();
     
+    // Status carried by responses for keys that don't exist
+    public static final String STATUS_NOT_FOUND = "NOT_FOUND";
+    
     /**
      * Parse incoming message
      */
@@ -32,6 +35,20 @@ public class ProtocolParser {
                     // Decode base64 value
                     message.value = Base64.getDecoder().decode(valueStr);
                 }
+                
+                // Scan parameters
+                message.prefix = data.has("prefix") ? data.get("prefix").getAsString() : null;
+                message.cursor = data.has("cursor") && !data.get("cursor").isJsonNull()
+                    ? data.get("cursor").getAsString() : null;
+                message.limit = data.has("limit") ? data.get("limit").getAsInt() : 0;
+                message.includeValues = data.has("include_values") && data.get("include_values").getAsBoolean();
+                
+                // Byte offset for PATCH
+                message.offset = data.has("offset") ? data.get("offset").getAsInt() : null;
+                
+                // Expected version for conditional writes
+                message.expectedVersion = data.has("version") && !data.get("version").isJsonNull()
+                    ? data.get("version").getAsLong() : null;
             }
             
             return message;
@@ -71,6 +88,53 @@ public class ProtocolParser {
         return gson.toJson(response);
     }
     
+    /**
+     * Create a not-found response. Misses are expected traffic (e.g. probing for optional keys),
+     * so they carry a dedicated status clients can check instead of matching the error text.
+     */
+    public static String createNotFoundResponse(String id, String command, String key) {
+        JsonObject response = new JsonObject();
+        response.addProperty("id", id);
+        response.addProperty("success", false);
+        response.addProperty("command", command);
+        response.addProperty("status", STATUS_NOT_FOUND);
+        response.add("data", null);
+        response.addProperty("error", "Key not found: " + key);
+        response.addProperty("timestamp", System.currentTimeMillis());
+        
+        return gson.toJson(response);
+    }
+    
+    /**
+     * Create error response carrying extra details
+     */
+    public static String createErrorResponse(String id, String command, String error, Object data) {
+        JsonObject response = new JsonObject();
+        response.addProperty("id", id);
+        response.addProperty("success", false);
+        response.addProperty("command", command);
+        response.add("data", gson.toJsonTree(data));
+        response.addProperty("error", error);
+        response.addProperty("timestamp", System.currentTimeMillis());
+        
+        return gson.toJson(response);
+    }
+    
+    /**
+     * Create a pushed event (not a reply to a request)
+     */
+    public static String createEventResponse(String subscriptionId, String event, Object data) {
+        JsonObject response = new JsonObject();
+        response.addProperty("id", subscriptionId);
+        response.addProperty("push", true);
+        response.addProperty("event", event);
+        response.addProperty("command", "WATCH");
+        response.add("data", gson.toJsonTree(data));
+        response.addProperty("timestamp", System.currentTimeMillis());
+        
+        return gson.toJson(response);
+    }
+    
     /**
      * Message container class
      */
@@ -80,6 +144,12 @@ public class ProtocolParser {
         public String command;
         public String key;
         public byte[] value;
+        public String prefix;
+        public String cursor;
+        public int limit;
+        public boolean includeValues;
+        public Long expectedVersion;
+        public Integer offset;
     }
 }
 
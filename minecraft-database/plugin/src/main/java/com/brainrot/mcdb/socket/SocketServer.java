@@ -8,8 +8,11 @@ import com.brainrot.mcdb.utils.ConfigManager;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
@@ -20,6 +23,7 @@ public class SocketServer {
     
     private final MinecraftDBPlugin plugin;
     private final ConfigManager config;
+    private final BlockDatabase database;
     private final CommandHandler commandHandler;
     private final Set<ClientHandler> activeConnections;
     
@@ -31,6 +35,7 @@ public class SocketServer {
     public SocketServer(MinecraftDBPlugin plugin, BlockDatabase database) {
         this.plugin = plugin;
         this.config = plugin.getConfigManager();
+        this.database = database;
         this.commandHandler = new CommandHandler(plugin, database);
         this.activeConnections = ConcurrentHashMap.newKeySet();
         this.running = false;
@@ -171,6 +176,7 @@ public class SocketServer {
         private BufferedReader reader;
         private BufferedWriter writer;
         private boolean authenticated;
+        private WatchSubscription subscription;
         
         public ClientHandler(Socket socket) {
             this.socket = socket;
@@ -232,6 +238,13 @@ public class SocketServer {
                     authenticated = true;
                 }
                 
+                // Subscriptions belong to this connection, everything else is stateless
+                String command = message.command != null ? message.command.toUpperCase() : "";
+                if (command.equals("WATCH") || command.equals("UNWATCH")) {
+                    sendResponse(handleWatch(message, command));
+                    return;
+                }
+                
                 // Handle command
                 String response = commandHandler.handleCommand(message);
                 sendResponse(response);
@@ -248,7 +261,60 @@ public class SocketServer {
             }
         }
         
-        private void sendResponse(String response) {
+        /**
+         * Subscribe or unsubscribe this connection to changes under a key prefix
+         */
+        private String handleWatch(SocketMessage message, String command) {
+            String prefix = message.prefix != null ? message.prefix : "";
+            
+            if (command.equals("WATCH")) {
+                if (subscription == null) {
+                    subscription = new WatchSubscription(plugin, message.id, config.getWatchQueueSize(), this::sendResponse);
+                    subscription.start();
+                    database.addChangeListener(subscription);
+                    setWatching(true);
+                }
+                subscription.addPrefix(prefix);
+                subscription.setIncludeValues(message.includeValues);
+            } else if (subscription != null) {
+                subscription.removePrefix(prefix);
+                if (subscription.isEmpty()) {
+                    closeSubscription();
+                }
+            }
+            
+            Map<String, Object> data = new HashMap<>();
+            data.put("prefix", prefix);
+            data.put("subscription", subscription != null ? subscription.getSubscriptionId() : null);
+            data.put("prefixes", subscription != null ? subscription.getPrefixes() : Set.of());
+            data.put("version", database.getCommitSequence());
+            
+            return ProtocolParser.createSuccessResponse(message.id, command, data);
+        }
+        
+        private synchronized void closeSubscription() {
+            if (subscription != null) {
+                database.removeChangeListener(subscription);
+                subscription.stop();
+                subscription = null;
+                setWatching(false);
+            }
+        }
+        
+        /**
+         * Idle watchers may stay connected, so the read timeout is lifted while subscribed and
+         * TCP keepalive notices a vanished peer instead. A timeout never fires mid-line.
+         */
+        private void setWatching(boolean watching) {
+            try {
+                socket.setSoTimeout(watching ? 0 : config.getTimeoutSeconds() * 1000);
+                socket.setKeepAlive(watching);
+            } catch (SocketException e) {
+                // Socket is already closed
+            }
+        }
+        
+        private synchronized void sendResponse(String response) {
             try {
                 writer.write(response);
                 writer.newLine();
@@ -259,6 +325,7 @@ public class SocketServer {
         }
         
         public void close() {
+            closeSubscription();
             try {
                 if (reader != null) reader.close();
                 if (writer != null) writer.close();
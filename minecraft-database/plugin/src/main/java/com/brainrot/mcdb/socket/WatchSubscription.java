@@ -0,0 +1,169 @@
+package com.brainrot.mcdb.socket;
+
+import com.brainrot.mcdb.MinecraftDBPlugin;
+import com.brainrot.mcdb.database.ChangeListener;
+import com.brainrot.mcdb.models.ChangeEvent;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Key-prefix subscription for a single socket connection.
+ * Matching changes are queued by the database and pushed to the client from a dedicated thread,
+ * so a slow client never blocks writers. When the queue overflows, pending events are dropped
+ * and the client is told to resync its prefixes with SCAN.
+ */
+public class WatchSubscription implements ChangeListener, Runnable {
+    
+    // Values larger than this are not pushed inline, clients READ them instead
+    private static final int MAX_INLINE_VALUE_BYTES = 64 * 1024;
+    
+    private final MinecraftDBPlugin plugin;
+    private final String subscriptionId;
+    private final Consumer<String> sender;
+    private final BlockingQueue<ChangeEvent> queue;
+    private final Set<String> prefixes;
+    
+    private volatile boolean includeValues;
+    private volatile boolean overflowed;
+    private volatile boolean running;
+    private Thread thread;
+    
+    public WatchSubscription(MinecraftDBPlugin plugin, String subscriptionId, int queueSize, Consumer<String> sender) {
+        this.plugin = plugin;
+        this.subscriptionId = subscriptionId;
+        this.sender = sender;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.prefixes = new CopyOnWriteArraySet<>();
+    }
+    
+    /**
+     * Start the push thread
+     */
+    public void start() {
+        running = true;
+        thread = new Thread(this, "MCDB-Watch-" + subscriptionId);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Stop the push thread and drop any pending events
+     */
+    public void stop() {
+        running = false;
+        queue.clear();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+    
+    public void addPrefix(String prefix) {
+        prefixes.add(prefix == null ? "" : prefix);
+    }
+    
+    public void removePrefix(String prefix) {
+        prefixes.remove(prefix == null ? "" : prefix);
+    }
+    
+    public Set<String> getPrefixes() {
+        return prefixes;
+    }
+    
+    public boolean isEmpty() {
+        return prefixes.isEmpty();
+    }
+    
+    public void setIncludeValues(boolean includeValues) {
+        this.includeValues = includeValues;
+    }
+    
+    public String getSubscriptionId() {
+        return subscriptionId;
+    }
+    
+    @Override
+    public void onChange(ChangeEvent event) {
+        if (!running || !matches(event)) {
+            return;
+        }
+        
+        if (!queue.offer(event)) {
+            // Client can't keep up - drop everything and ask it to resync
+            overflowed = true;
+            queue.clear();
+        }
+    }
+    
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                ChangeEvent event = queue.poll(1, TimeUnit.SECONDS);
+                
+                if (overflowed) {
+                    overflowed = false;
+                    queue.clear();
+                    sendResync();
+                    continue;
+                }
+                
+                if (event != null) {
+                    sendEvent(event);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                plugin.getLogger().warning("Error pushing watch event: " + e.getMessage());
+            }
+        }
+    }
+    
+    private boolean matches(ChangeEvent event) {
+        if (event.getOperation() == ChangeEvent.Operation.CLEAR) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (event.getKey().startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void sendEvent(ChangeEvent event) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("key", event.getKey());
+        data.put("op", event.getOperation().name());
+        data.put("version", event.getVersion());
+        data.put("timestamp", event.getTimestamp());
+        
+        byte[] value = event.getValue();
+        if (includeValues && value != null) {
+            if (value.length <= MAX_INLINE_VALUE_BYTES) {
+                data.put("value", Base64.getEncoder().encodeToString(value));
+            } else {
+                data.put("value_omitted", true);
+            }
+            data.put("size", value.length);
+        }
+        
+        sender.accept(ProtocolParser.createEventResponse(subscriptionId, "CHANGE", data));
+    }
+    
+    private void sendResync() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("prefixes", prefixes);
+        data.put("message", "Watch queue overflowed, events were dropped - rescan watched prefixes");
+        
+        sender.accept(ProtocolParser.createEventResponse(subscriptionId, "RESYNC", data));
+    }
+}
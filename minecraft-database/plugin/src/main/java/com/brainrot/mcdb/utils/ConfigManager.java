@@ -1,154 +1,286 @@
 package com.brainrot.mcdb.utils;
 
 import com.brainrot.mcdb.MinecraftDBPlugin;
-import org.bukkit.configuration.file.FileConfiguration;
+import com.brainrot.mcdb.models.Namespace;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Typed access to config.yml. Values come from an immutable ConfigSnapshot behind a single
+ * atomic reference, so getters cost a field read and a reload reaches every component holding
+ * this manager at once.
+ */
 public class ConfigManager {
     
     private final MinecraftDBPlugin plugin;
-    private final FileConfiguration config;
+    private final File configFile;
+    private final AtomicReference<ConfigSnapshot> settings;
     
+    /**
+     * @throws IllegalArgumentException if config.yml has an invalid setting
+     */
     public ConfigManager(MinecraftDBPlugin plugin) {
         this.plugin = plugin;
-        this.config = plugin.getConfig();
+        this.configFile = new File(plugin.getDataFolder(), "config.yml");
+        this.settings = new AtomicReference<>(new ConfigSnapshot(plugin.getConfig(), null, null));
+    }
+    
+    /**
+     * Re-read config.yml and publish it in one step. Returns the paths of changed settings
+     * that only apply after a restart; those keep their running value until then.
+     * The file is parsed and validated on its own first; the plugin's configuration is only
+     * replaced once it passed.
+     *
+     * @throws IllegalArgumentException if the file can't be parsed or has an invalid setting;
+     *         the current settings and configuration stay
+     */
+    public synchronized List<String> reload() {
+        YamlConfiguration fresh = new YamlConfiguration();
+        try {
+            fresh.load(configFile);
+        } catch (IOException | InvalidConfigurationException e) {
+            throw new IllegalArgumentException("config.yml could not be read: " + e.getMessage(), e);
+        }
+        if (plugin.getConfig().getDefaults() != null) {
+            fresh.setDefaults(plugin.getConfig().getDefaults());
+        }
+        
+        List<String> restartPending = new ArrayList<>();
+        ConfigSnapshot snapshot = new ConfigSnapshot(fresh, settings.get(), restartPending);
+        
+        plugin.reloadConfig();
+        settings.set(snapshot);
+        return restartPending;
+    }
+    
+    private ConfigSnapshot current() {
+        return settings.get();
     }
     
     // Socket configuration
     public boolean isSocketEnabled() {
-        return config.getBoolean("socket.enabled", true);
+        return current().socketEnabled;
     }
     
     public String getSocketHost() {
-        return config.getString("socket.host", "0.0.0.0");
+        return current().socketHost;
     }
     
     public int getSocketPort() {
-        return config.getInt("socket.port", 25566);
+        return current().socketPort;
     }
     
     public String getAuthToken() {
-        return config.getString("socket.auth-token", "change-me-in-production-please");
+        return current().authToken;
     }
     
     public int getMaxConnections() {
-        return config.getInt("socket.max-connections", 10);
+        return current().maxConnections;
     }
     
     public int getTimeoutSeconds() {
-        return config.getInt("socket.timeout-seconds", 30);
+        return current().timeoutSeconds;
+    }
+    
+    public int getWatchQueueSize() {
+        return current().watchQueueSize;
     }
     
     // Database configuration
     public String getWorldName() {
-        return config.getString("database.world", "world");
+        return current().worldName;
     }
     
     public int getChunkStartX() {
-        return config.getInt("database.chunks.start-x", 0);
+        return current().chunkStartX;
     }
     
     public int getChunkStartZ() {
-        return config.getInt("database.chunks.start-z", 0);
+        return current().chunkStartZ;
     }
     
     public int getChunkEndX() {
-        return config.getInt("database.chunks.end-x", 3);
+        return current().chunkEndX;
     }
     
     public int getChunkEndZ() {
-        return config.getInt("database.chunks.end-z", 3);
+        return current().chunkEndZ;
+    }
+    
+    /**
+     * Persist a new end row after the area grew, so the next start uses the larger area.
+     * Only end-z is changed in the file as it is on disk now, so edits made since the last
+     * (re)load are kept. getChunkEndZ keeps the end row the running area started with.
+     */
+    public synchronized void setChunkEndZ(int endZ) {
+        plugin.getConfig().set("database.chunks.end-z", endZ);
+        
+        YamlConfiguration onDisk = new YamlConfiguration();
+        try {
+            onDisk.load(configFile);
+            onDisk.set("database.chunks.end-z", endZ);
+            onDisk.save(configFile);
+        } catch (IOException | InvalidConfigurationException e) {
+            plugin.getLogger().warning("Could not save database.chunks.end-z: " + e.getMessage());
+        }
+    }
+    
+    // Area growth
+    public boolean isGrowthEnabled() {
+        return current().growthEnabled;
+    }
+    
+    public int getGrowthThresholdPercent() {
+        return current().growthThresholdPercent;
+    }
+    
+    public int getGrowthRowsPerStep() {
+        return current().growthRowsPerStep;
+    }
+    
+    public int getGrowthMaxChunkZ() {
+        return current().growthMaxChunkZ;
     }
     
     public int getMinY() {
-        return config.getInt("database.storage.min-y", 5);
+        return current().minY;
     }
     
     public int getMaxY() {
-        return config.getInt("database.storage.max-y", 250);
+        return current().maxY;
     }
     
     public String getEncoding() {
-        return config.getString("database.storage.encoding", "simple");
+        return current().encoding;
     }
     
     public int getBlocksPerKey() {
-        return config.getInt("database.storage.blocks-per-key", 16);
+        return current().blocksPerKey;
     }
     
     public int getBlocksPerValue() {
-        return config.getInt("database.storage.blocks-per-value", 32);
+        return current().blocksPerValue;
     }
     
     public boolean isCompressionEnabled() {
-        return config.getBoolean("database.storage.compression", true);
+        return current().compressionEnabled;
+    }
+    
+    /**
+     * Configured namespaces, longest prefix first so the first match routes a key
+     */
+    public List<Namespace> getNamespaces() {
+        return current().namespaces;
     }
     
     // Protection configuration
     public boolean preventPlayerAccess() {
-        return config.getBoolean("database.protection.prevent-player-access", true);
+        return current().preventPlayerAccess;
     }
     
     public boolean preventExplosions() {
-        return config.getBoolean("database.protection.prevent-explosions", true);
+        return current().preventExplosions;
     }
     
     public boolean preventBlockUpdates() {
-        return config.getBoolean("database.protection.prevent-block-updates", true);
+        return current().preventBlockUpdates;
     }
     
     public boolean preventMobSpawning() {
-        return config.getBoolean("database.protection.prevent-mob-spawning", true);
+        return current().preventMobSpawning;
     }
     
     public int getTeleportDistance() {
-        return config.getInt("database.protection.teleport-distance", 100);
+        return current().teleportDistance;
     }
     
     // Logging configuration
     public String getLogLevel() {
-        return config.getString("logging.level", "INFO");
+        return current().logLevel;
     }
     
     public boolean logOperations() {
-        return config.getBoolean("logging.log-operations", true);
+        return current().logOperations;
     }
     
     public boolean logSocketConnections() {
-        return config.getBoolean("logging.log-socket-connections", true);
+        return current().logSocketConnections;
     }
     
     public boolean logPerformance() {
-        return config.getBoolean("logging.log-performance", false);
+        return current().logPerformance;
     }
     
     // Performance configuration
     public boolean useAsyncOperations() {
-        return config.getBoolean("performance.async-operations", true);
+        return current().asyncOperations;
     }
     
     public boolean useBatchWrites() {
-        return config.getBoolean("performance.batch-writes", true);
+        return current().batchWrites;
     }
     
     public int getCacheSize() {
-        return config.getInt("performance.cache-size", 1000);
+        return current().cacheSize;
+    }
+    
+    public long getCacheMaxBytes() {
+        return current().cacheMaxBytes;
+    }
+    
+    public boolean isOffHeapCacheEnabled() {
+        return current().offHeapCacheEnabled;
+    }
+    
+    public long getOffHeapCacheBytes() {
+        return current().offHeapCacheBytes;
+    }
+    
+    public int getChunkLoadConcurrency() {
+        return current().chunkLoadConcurrency;
+    }
+    
+    public int getChunkIdleSeconds() {
+        return current().chunkIdleSeconds;
+    }
+    
+    public boolean rejectWhileWarming() {
+        return current().rejectWhileWarming;
+    }
+    
+    public int getRefreshAheadPercent() {
+        return current().refreshAheadPercent;
     }
     
     public int getCacheTTLSeconds() {
-        return config.getInt("performance.cache-ttl-seconds", 300);
+        return current().cacheTTLSeconds;
     }
     
     public int getAutoSaveInterval() {
-        return config.getInt("performance.auto-save-interval", 6000);
+        return current().autoSaveInterval;
     }
     
     // Maintenance configuration
     public int getAutoCleanupDays() {
-        return config.getInt("maintenance.auto-cleanup-days", 0);
+        return current().autoCleanupDays;
     }
     
     public boolean defragmentOnStartup() {
-        return config.getBoolean("maintenance.defragment-on-startup", false);
+        return current().defragmentOnStartup;
+    }
+    
+    public int getCompactionIntervalMinutes() {
+        return current().compactionIntervalMinutes;
+    }
+    
+    public int getCompactionTickBudgetMillis() {
+        return current().compactionTickBudgetMillis;
     }
 }
 
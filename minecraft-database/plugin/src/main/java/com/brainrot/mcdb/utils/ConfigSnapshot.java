@@ -0,0 +1,297 @@
+package com.brainrot.mcdb.utils;
+
+import com.brainrot.mcdb.models.Namespace;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Immutable, validated view of config.yml. ConfigManager publishes one instance at a time, so
+ * readers pay a field read and never see a mix of old and new settings.
+ *
+ * Settings the running database was built from (area, namespaces, socket, caches) are pinned:
+ * a reload keeps the running value and reports the path, and the new value applies after a
+ * restart.
+ */
+final class ConfigSnapshot {
+    
+    // Socket
+    final boolean socketEnabled;
+    final String socketHost;
+    final int socketPort;
+    final String authToken;
+    final int maxConnections;
+    final int timeoutSeconds;
+    final int watchQueueSize;
+    
+    // Database area and storage
+    final String worldName;
+    final int chunkStartX;
+    final int chunkStartZ;
+    final int chunkEndX;
+    final int chunkEndZ;
+    final boolean growthEnabled;
+    final int growthThresholdPercent;
+    final int growthRowsPerStep;
+    final int growthMaxChunkZ;
+    final int minY;
+    final int maxY;
+    final String encoding;
+    final int blocksPerKey;
+    final int blocksPerValue;
+    final boolean compressionEnabled;
+    final List<Namespace> namespaces;
+    
+    // Protection
+    final boolean preventPlayerAccess;
+    final boolean preventExplosions;
+    final boolean preventBlockUpdates;
+    final boolean preventMobSpawning;
+    final int teleportDistance;
+    
+    // Logging
+    final String logLevel;
+    final boolean logOperations;
+    final boolean logSocketConnections;
+    final boolean logPerformance;
+    
+    // Performance
+    final boolean asyncOperations;
+    final boolean batchWrites;
+    final int cacheSize;
+    final long cacheMaxBytes;
+    final boolean offHeapCacheEnabled;
+    final long offHeapCacheBytes;
+    final int chunkLoadConcurrency;
+    final int chunkIdleSeconds;
+    final boolean rejectWhileWarming;
+    final int refreshAheadPercent;
+    final int cacheTTLSeconds;
+    final int autoSaveInterval;
+    
+    // Maintenance
+    final int autoCleanupDays;
+    final boolean defragmentOnStartup;
+    final int compactionIntervalMinutes;
+    final int compactionTickBudgetMillis;
+    
+    /**
+     * Read and validate the configuration. With a running snapshot, pinned settings keep their
+     * running value and the paths of changed ones are added to restartPending.
+     *
+     * @throws IllegalArgumentException if a setting is out of range, including a pinned one
+     */
+    ConfigSnapshot(FileConfiguration config, ConfigSnapshot running, List<String> restartPending) {
+        if (running != null) {
+            // Validate the file as written first; pinning would hide an invalid restart-only value
+            new ConfigSnapshot(config, null, null);
+        }
+        Pins pins = new Pins(running, restartPending);
+        
+        socketEnabled = pins.keep("socket.enabled", config.getBoolean("socket.enabled", true), s -> s.socketEnabled);
+        socketHost = pins.keep("socket.host", config.getString("socket.host", "0.0.0.0"), s -> s.socketHost);
+        socketPort = pins.keep("socket.port", config.getInt("socket.port", 25566), s -> s.socketPort);
+        authToken = config.getString("socket.auth-token", "change-me-in-production-please");
+        maxConnections = pins.keep("socket.max-connections", config.getInt("socket.max-connections", 10), s -> s.maxConnections);
+        timeoutSeconds = config.getInt("socket.timeout-seconds", 30);
+        watchQueueSize = config.getInt("socket.watch-queue-size", 256);
+        
+        worldName = pins.keep("database.world", config.getString("database.world", "world"), s -> s.worldName);
+        chunkStartX = pins.keep("database.chunks.start-x", config.getInt("database.chunks.start-x", 0), s -> s.chunkStartX);
+        chunkStartZ = pins.keep("database.chunks.start-z", config.getInt("database.chunks.start-z", 0), s -> s.chunkStartZ);
+        chunkEndX = pins.keep("database.chunks.end-x", config.getInt("database.chunks.end-x", 3), s -> s.chunkEndX);
+        growthEnabled = pins.keep("database.chunks.growth.enabled",
+            config.getBoolean("database.chunks.growth.enabled", false), s -> s.growthEnabled);
+        // With growth on, end-z is rewritten by the plugin as the area grows, so a changed
+        // value on reload is expected and not reported
+        int endZ = config.getInt("database.chunks.end-z", 3);
+        chunkEndZ = growthEnabled && running != null ? running.chunkEndZ
+            : pins.keep("database.chunks.end-z", endZ, s -> s.chunkEndZ);
+        growthThresholdPercent = Math.max(1, Math.min(100, config.getInt("database.chunks.growth.threshold-percent", 85)));
+        growthRowsPerStep = Math.max(1, config.getInt("database.chunks.growth.rows-per-step", 2));
+        growthMaxChunkZ = pins.keep("database.chunks.growth.max-end-z",
+            growthEnabled ? Math.max(chunkEndZ, config.getInt("database.chunks.growth.max-end-z", chunkEndZ)) : chunkEndZ,
+            s -> s.growthMaxChunkZ);
+        minY = pins.keep("database.storage.min-y", config.getInt("database.storage.min-y", 5), s -> s.minY);
+        maxY = pins.keep("database.storage.max-y", config.getInt("database.storage.max-y", 250), s -> s.maxY);
+        encoding = pins.keep("database.storage.encoding", config.getString("database.storage.encoding", "simple"), s -> s.encoding);
+        blocksPerKey = config.getInt("database.storage.blocks-per-key", 16);
+        blocksPerValue = config.getInt("database.storage.blocks-per-value", 32);
+        compressionEnabled = pins.keep("database.storage.compression",
+            config.getBoolean("database.storage.compression", true), s -> s.compressionEnabled);
+        
+        preventPlayerAccess = config.getBoolean("database.protection.prevent-player-access", true);
+        preventExplosions = config.getBoolean("database.protection.prevent-explosions", true);
+        preventBlockUpdates = config.getBoolean("database.protection.prevent-block-updates", true);
+        preventMobSpawning = config.getBoolean("database.protection.prevent-mob-spawning", true);
+        teleportDistance = config.getInt("database.protection.teleport-distance", 100);
+        
+        logLevel = config.getString("logging.level", "INFO");
+        logOperations = config.getBoolean("logging.log-operations", true);
+        logSocketConnections = config.getBoolean("logging.log-socket-connections", true);
+        logPerformance = config.getBoolean("logging.log-performance", false);
+        
+        asyncOperations = config.getBoolean("performance.async-operations", true);
+        batchWrites = config.getBoolean("performance.batch-writes", true);
+        cacheSize = pins.keep("performance.cache-size", config.getInt("performance.cache-size", 1000), s -> s.cacheSize);
+        cacheMaxBytes = pins.keep("performance.cache-max-mb",
+            config.getLong("performance.cache-max-mb", 64) * 1024L * 1024L, s -> s.cacheMaxBytes);
+        offHeapCacheEnabled = pins.keep("performance.off-heap-cache.enabled",
+            config.getBoolean("performance.off-heap-cache.enabled", false), s -> s.offHeapCacheEnabled);
+        offHeapCacheBytes = pins.keep("performance.off-heap-cache.size-mb",
+            config.getLong("performance.off-heap-cache.size-mb", 256) * 1024L * 1024L, s -> s.offHeapCacheBytes);
+        chunkLoadConcurrency = Math.max(1, config.getInt("performance.chunk-loading.concurrency", 16));
+        chunkIdleSeconds = pins.keep("performance.chunk-loading.idle-unload-seconds",
+            Math.max(0, config.getInt("performance.chunk-loading.idle-unload-seconds", 0)), s -> s.chunkIdleSeconds);
+        rejectWhileWarming = config.getBoolean("performance.chunk-loading.reject-while-warming", false);
+        refreshAheadPercent = pins.keep("performance.refresh-ahead-percent",
+            Math.max(0, Math.min(100, config.getInt("performance.refresh-ahead-percent", 10))), s -> s.refreshAheadPercent);
+        cacheTTLSeconds = pins.keep("performance.cache-ttl-seconds",
+            config.getInt("performance.cache-ttl-seconds", 300), s -> s.cacheTTLSeconds);
+        autoSaveInterval = config.getInt("performance.auto-save-interval", 6000);
+        
+        autoCleanupDays = config.getInt("maintenance.auto-cleanup-days", 0);
+        defragmentOnStartup = config.getBoolean("maintenance.defragment-on-startup", false);
+        compactionIntervalMinutes = pins.keep("maintenance.compaction.interval-minutes",
+            config.getInt("maintenance.compaction.interval-minutes", 60), s -> s.compactionIntervalMinutes);
+        compactionTickBudgetMillis = Math.max(1, config.getInt("maintenance.compaction.tick-budget-ms", 5));
+        
+        validate();
+        
+        List<Namespace> parsed = parseNamespaces(config);
+        if (running != null && !sameNamespaces(parsed, running.namespaces)) {
+            restartPending.add("database.namespaces");
+            parsed = running.namespaces;
+        }
+        namespaces = parsed;
+    }
+    
+    private void validate() {
+        if (socketPort < 1 || socketPort > 65535) {
+            throw new IllegalArgumentException("socket.port must be between 1 and 65535");
+        }
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("socket.max-connections must be at least 1");
+        }
+        if (timeoutSeconds < 0 || watchQueueSize < 1) {
+            throw new IllegalArgumentException("socket.timeout-seconds must not be negative and watch-queue-size must be at least 1");
+        }
+        if (worldName == null || worldName.isBlank()) {
+            throw new IllegalArgumentException("database.world is empty");
+        }
+        if (chunkEndX < chunkStartX || chunkEndZ < chunkStartZ) {
+            throw new IllegalArgumentException("database.chunks end-x/end-z must not be below start-x/start-z");
+        }
+        if (minY > maxY) {
+            throw new IllegalArgumentException("database.storage.min-y is above max-y");
+        }
+        if (blocksPerKey < 1 || blocksPerValue < 1) {
+            throw new IllegalArgumentException("database.storage.blocks-per-key and blocks-per-value must be at least 1");
+        }
+        if (cacheSize < 0 || cacheMaxBytes < 0 || cacheTTLSeconds < 0) {
+            throw new IllegalArgumentException("performance cache settings must not be negative");
+        }
+    }
+    
+    // Namespaces
+    
+    /**
+     * Configured namespaces, longest prefix first so the first match routes a key.
+     * Without the section, one catch-all namespace covers the whole storage area.
+     *
+     * @throws IllegalArgumentException if the section is invalid (bands outside the area or
+     *         overlapping, duplicate prefixes, or no namespace with an empty prefix)
+     */
+    private List<Namespace> parseNamespaces(FileConfiguration config) {
+        ConfigurationSection section = config.getConfigurationSection("database.namespaces");
+        if (section == null) {
+            return List.of(new Namespace("default", "", minY, maxY, cacheSize, cacheMaxBytes));
+        }
+        
+        List<Namespace> namespaces = new ArrayList<>();
+        for (String name : section.getKeys(false)) {
+            String path = "database.namespaces." + name;
+            namespaces.add(new Namespace(name,
+                config.getString(path + ".prefix", name + ":"),
+                config.getInt(path + ".min-y", minY),
+                config.getInt(path + ".max-y", maxY),
+                config.getInt(path + ".cache-size", cacheSize),
+                config.getLong(path + ".cache-max-mb", cacheMaxBytes / (1024L * 1024L)) * 1024L * 1024L));
+        }
+        
+        String problem = validateNamespaces(namespaces);
+        if (problem != null) {
+            throw new IllegalArgumentException("database.namespaces is invalid: " + problem);
+        }
+        
+        namespaces.sort(Comparator.comparingInt((Namespace ns) -> ns.getPrefix().length()).reversed());
+        return List.copyOf(namespaces);
+    }
+    
+    private String validateNamespaces(List<Namespace> namespaces) {
+        Set<String> prefixes = new HashSet<>();
+        List<Namespace> byY = new ArrayList<>(namespaces);
+        byY.sort(Comparator.comparingInt(Namespace::getMinY));
+        
+        for (int i = 0; i < byY.size(); i++) {
+            Namespace ns = byY.get(i);
+            if (ns.getMinY() > ns.getMaxY() || ns.getMinY() < minY || ns.getMaxY() > maxY) {
+                return ns.getName() + " is outside Y " + minY + "-" + maxY;
+            }
+            if (i > 0 && ns.getMinY() <= byY.get(i - 1).getMaxY()) {
+                return ns.getName() + " overlaps " + byY.get(i - 1).getName();
+            }
+            if (!prefixes.add(ns.getPrefix())) {
+                return "duplicate prefix '" + ns.getPrefix() + "'";
+            }
+        }
+        return prefixes.contains("") ? null : "no catch-all namespace with an empty prefix";
+    }
+    
+    private static boolean sameNamespaces(List<Namespace> a, List<Namespace> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            Namespace x = a.get(i);
+            Namespace y = b.get(i);
+            if (!x.getName().equals(y.getName()) || !x.getPrefix().equals(y.getPrefix())
+                    || x.getMinY() != y.getMinY() || x.getMaxY() != y.getMaxY()
+                    || x.getCacheSize() != y.getCacheSize() || x.getCacheMaxBytes() != y.getCacheMaxBytes()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Resolves pinned settings against the running snapshot, if any
+     */
+    private static final class Pins {
+        private final ConfigSnapshot running;
+        private final List<String> restartPending;
+        
+        Pins(ConfigSnapshot running, List<String> restartPending) {
+            this.running = running;
+            this.restartPending = restartPending;
+        }
+        
+        <T> T keep(String path, T configured, Function<ConfigSnapshot, T> field) {
+            if (running == null) {
+                return configured;
+            }
+            T current = field.apply(running);
+            if (!Objects.equals(current, configured)) {
+                restartPending.add(path);
+            }
+            return current;
+        }
+    }
+}
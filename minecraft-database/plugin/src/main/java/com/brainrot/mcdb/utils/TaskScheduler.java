@@ -0,0 +1,147 @@
+package com.brainrot.mcdb.utils;
+
+import com.brainrot.mcdb.MinecraftDBPlugin;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Runs plugin work on the thread that owns it, on both Paper and Folia.
+ *
+ * On Paper every chunk and all global work belong to the main thread, so this is the Bukkit
+ * scheduler. On Folia each region of loaded chunks ticks on its own thread: block work is sent
+ * to the region scheduler owning the chunk, and timers run on the global region scheduler.
+ * Work already on the owning thread runs inline.
+ */
+public class TaskScheduler {
+    
+    /**
+     * Handle for a repeating task
+     */
+    public interface Task {
+        void cancel();
+    }
+    
+    private final MinecraftDBPlugin plugin;
+    private final boolean folia;
+    
+    public TaskScheduler(MinecraftDBPlugin plugin) {
+        this.plugin = plugin;
+        this.folia = detectFolia();
+    }
+    
+    private static boolean detectFolia() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Whether the server ticks regions on separate threads
+     */
+    public boolean isFolia() {
+        return folia;
+    }
+    
+    /**
+     * Whether the current thread may touch blocks in the chunk
+     */
+    public boolean isOwnedByCurrentThread(World world, int chunkX, int chunkZ) {
+        return folia ? Bukkit.isOwnedByCurrentRegion(world, chunkX, chunkZ) : Bukkit.isPrimaryThread();
+    }
+    
+    /**
+     * Run a task on the thread owning the chunk, inline if that is the current thread
+     */
+    public void execute(World world, int chunkX, int chunkZ, Runnable task) {
+        if (isOwnedByCurrentThread(world, chunkX, chunkZ)) {
+            task.run();
+        } else if (folia) {
+            Bukkit.getRegionScheduler().execute(plugin, world, chunkX, chunkZ, task);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+    
+    /**
+     * Run a task on the thread owning the chunk in a later tick, never inline. Used to spread
+     * large jobs over ticks.
+     */
+    public void executeLater(World world, int chunkX, int chunkZ, Runnable task) {
+        if (folia) {
+            Bukkit.getRegionScheduler().execute(plugin, world, chunkX, chunkZ, task);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+    
+    /**
+     * Compute a result on the thread owning the chunk. Exceptions complete the future.
+     */
+    public <T> CompletableFuture<T> supply(World world, int chunkX, int chunkZ, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(world, chunkX, chunkZ, () -> complete(future, task));
+        return future;
+    }
+    
+    /**
+     * Compute a result on the thread owning the chunk in a later tick
+     */
+    public <T> CompletableFuture<T> supplyLater(World world, int chunkX, int chunkZ, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executeLater(world, chunkX, chunkZ, () -> complete(future, task));
+        return future;
+    }
+    
+    private static <T> void complete(CompletableFuture<T> future, Supplier<T> task) {
+        try {
+            future.complete(task.get());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+    
+    /**
+     * Executor for work that touches no world state, e.g. scanning chunk snapshots
+     */
+    public Executor async() {
+        if (folia) {
+            return task -> Bukkit.getAsyncScheduler().runNow(plugin, t -> task.run());
+        }
+        return task -> Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
+    }
+    
+    /**
+     * Run a task that touches no chunks on the next tick (main thread or global region)
+     */
+    public void runGlobal(Runnable task) {
+        if (folia) {
+            Bukkit.getGlobalRegionScheduler().execute(plugin, task);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+    
+    /**
+     * Repeat a task on the main thread or global region. Delays are clamped to at least a tick.
+     */
+    public Task runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        long delay = Math.max(1, delayTicks);
+        long period = Math.max(1, periodTicks);
+        if (folia) {
+            ScheduledTask scheduled = Bukkit.getGlobalRegionScheduler()
+                .runAtFixedRate(plugin, t -> task.run(), delay, period);
+            return scheduled::cancel;
+        }
+        BukkitTask scheduled = Bukkit.getScheduler().runTaskTimer(plugin, task, delay, period);
+        return scheduled::cancel;
+    }
+}
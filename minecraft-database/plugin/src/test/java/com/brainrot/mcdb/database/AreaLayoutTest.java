@@ -0,0 +1,97 @@
+package com.brainrot.mcdb.database;
+
+import com.brainrot.mcdb.models.BlockPosition;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AreaLayoutTest {
+    
+    // Two by two chunks with partial sections at both y bounds (-5..-1, 0..15, 16..20)
+    private final AreaLayout layout = new AreaLayout(-1, -1, 0, 0, -5, 20);
+    
+    @Test
+    void splitsColumnsIntoPartialSections() {
+        assertEquals(3, layout.getSectionsPerColumn());
+        assertEquals(12, layout.getSectionCount());
+        assertEquals(26 * 256, layout.getColumnSize());
+        assertEquals(4 * 26 * 256, layout.getTotalBlocks());
+        
+        assertEquals(-5, layout.getSectionMinY(0));
+        assertEquals(5 * 256, layout.getSectionLength(0));
+        assertEquals(0, layout.getSectionMinY(1));
+        assertEquals(16 * 256, layout.getSectionLength(1));
+        assertEquals(5 * 256, layout.getSectionLength(2));
+        assertEquals(layout.getColumnSize() + 5 * 256, layout.getSectionStart(4));
+    }
+    
+    @Test
+    void offsetsRoundTrip() {
+        for (long offset = 0; offset < layout.getTotalBlocks(); offset++) {
+            BlockPosition position = layout.toPosition(offset);
+            assertTrue(layout.contains(position), "outside the area: " + position);
+            assertEquals(offset, layout.toOffset(position));
+        }
+    }
+    
+    @Test
+    void sectionsStayWithinOneChunkSection() {
+        for (int section = 0; section < layout.getSectionCount(); section++) {
+            long start = layout.getSectionStart(section);
+            BlockPosition first = layout.toPosition(start);
+            BlockPosition last = layout.toPosition(start + layout.getSectionLength(section) - 1);
+            
+            assertEquals(first.getX() >> 4, last.getX() >> 4);
+            assertEquals(first.getZ() >> 4, last.getZ() >> 4);
+            assertEquals(first.getY() >> 4, last.getY() >> 4);
+            assertEquals(section, layout.getSectionIndex(start));
+            assertEquals(section, layout.getSectionIndex(start + layout.getSectionLength(section) - 1));
+        }
+    }
+    
+    @Test
+    void numbersColumnsAlongXFirst() {
+        assertEquals(-1, layout.getColumnChunkX(0));
+        assertEquals(0, layout.getColumnChunkX(1));
+        assertEquals(-1, layout.getColumnChunkZ(1));
+        assertEquals(0, layout.getColumnChunkZ(2));
+        assertEquals(1, layout.getColumnIndex(layout.toOffset(0, 0, -16)));
+        assertEquals(2, layout.getColumnIndex(layout.toOffset(-16, 0, 0)));
+    }
+    
+    @Test
+    void containsChecksChunkAndHeightBounds() {
+        assertTrue(layout.contains(-16, -5, -16));
+        assertTrue(layout.contains(15, 20, 15));
+        assertFalse(layout.contains(-17, 0, 0));
+        assertFalse(layout.contains(16, 0, 0));
+        assertFalse(layout.contains(0, -6, 0));
+        assertFalse(layout.contains(0, 21, 0));
+        assertTrue(layout.containsChunk(-1, 0));
+        assertFalse(layout.containsChunk(1, 0));
+    }
+    
+    @Test
+    void extendKeepsExistingOffsets() {
+        AreaLayout extended = layout.extend(2);
+        
+        assertEquals(2, extended.getMaxChunkZ());
+        assertEquals(layout.getTotalBlocks() * 2, extended.getTotalBlocks());
+        for (long offset = 0; offset < layout.getTotalBlocks(); offset += 97) {
+            assertEquals(layout.toPosition(offset), extended.toPosition(offset));
+        }
+        assertEquals(layout.getTotalBlocks(), extended.toOffset(-16, -5, 16));
+    }
+    
+    @Test
+    void sliceCoversOnlyTheBand() {
+        AreaLayout band = layout.slice(0, 15);
+        
+        assertEquals(1, band.getSectionsPerColumn());
+        assertEquals(16 * 256, band.getColumnSize());
+        assertFalse(band.contains(0, 16, 0));
+        assertEquals(new BlockPosition(-16, 0, -16), band.toPosition(0));
+    }
+}
@@ -0,0 +1,178 @@
+package com.brainrot.mcdb.database;
+
+import com.brainrot.mcdb.models.BlockPosition;
+import com.brainrot.mcdb.models.DataAddress;
+import com.brainrot.mcdb.models.Extent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactIndexTest {
+    
+    private AreaLayout layout;
+    private CompactIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        layout = new AreaLayout(0, 0, 3, 3, 0, 63);
+        index = new CompactIndex(layout);
+    }
+    
+    private DataAddress address(long offset, int length, long version) {
+        BlockPosition start = layout.toPosition(offset);
+        return new DataAddress(start.getX() >> 4, start.getZ() >> 4, start, length, version, false, 0, length);
+    }
+    
+    @Test
+    void putGetAndReplace() {
+        index.put("alpha", address(100, 8, 1));
+        
+        DataAddress stored = index.get("alpha");
+        assertEquals(layout.toPosition(100), stored.getBlockPosition());
+        assertEquals(8, stored.getBlockCount());
+        assertEquals(1, stored.getVersion());
+        assertTrue(index.containsKey("alpha"));
+        assertNull(index.get("beta"));
+        
+        index.put("alpha", address(500, 3, 2));
+        assertEquals(1, index.size());
+        assertEquals(layout.toPosition(500), index.get("alpha").getBlockPosition());
+        assertEquals(2, index.get("alpha").getVersion());
+    }
+    
+    @Test
+    void removeDropsKeyFromTableAndOrder() {
+        index.put("a", address(0, 1, 1));
+        index.put("b", address(1, 1, 1));
+        index.put("c", address(2, 1, 1));
+        
+        assertTrue(index.remove("b"));
+        assertFalse(index.remove("b"));
+        assertNull(index.get("b"));
+        assertEquals(Arrays.asList("a", "c"), index.keys());
+        
+        // The freed id is reused without disturbing the others
+        index.put("d", address(3, 1, 1));
+        assertEquals(Arrays.asList("a", "c", "d"), index.keys());
+        assertEquals(layout.toPosition(2), index.get("c").getBlockPosition());
+    }
+    
+    @Test
+    void keepsEntriesAcrossResize() {
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            index.put("key:" + i, address(i, 1, i + 1));
+        }
+        
+        assertEquals(count, index.size());
+        for (int i = 0; i < count; i++) {
+            DataAddress stored = index.get("key:" + i);
+            assertEquals(layout.toPosition(i), stored.getBlockPosition());
+            assertEquals(i + 1, stored.getVersion());
+        }
+    }
+    
+    @Test
+    void scansInUnsignedUtf8Order() {
+        List<String> keys = Arrays.asList("zeta", "Zeta", "alpha", "\u00e4lpha", "a", "",
+            "\u65e5\u672c", "\ud83d\ude00", "ab");
+        for (int i = 0; i < keys.size(); i++) {
+            index.put(keys.get(i), address(i, 1, 1));
+        }
+        
+        List<String> expected = new ArrayList<>(keys);
+        expected.sort((a, b) -> Arrays.compareUnsigned(
+            a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(expected, index.keys());
+    }
+    
+    @Test
+    void rangeHonoursCursorPrefixAndLimit() {
+        for (String key : Arrays.asList("user:1", "user:2", "user:3", "user:4", "users", "video:1")) {
+            index.put(key, address(0, 1, 1));
+        }
+        
+        assertEquals(Arrays.asList("user:1", "user:2"), index.range("user:", true, "user:", 2));
+        assertEquals(Arrays.asList("user:3", "user:4"), index.range("user:2", false, "user:", 10));
+        assertEquals(Arrays.asList("user:2", "user:3"), index.range("user:2", true, "user:", 2));
+        assertEquals(Arrays.asList("users", "video:1"), index.range("user:4", false, null, 10));
+        assertTrue(index.range("zzz", true, null, 10).isEmpty());
+    }
+    
+    @Test
+    void orderSurvivesBlockSplitsAndRemovals() {
+        // Random inserts and removes across many sorted blocks, checked against a TreeMap
+        TreeMap<String, Integer> expected = new TreeMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            String key = String.format("k%05d", random.nextInt(8000));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, index.remove(key));
+            } else {
+                expected.put(key, i);
+                index.put(key, address(i % layout.getTotalBlocks(), 1, i));
+            }
+        }
+        
+        assertEquals(expected.size(), index.size());
+        assertEquals(new ArrayList<>(expected.keySet()), index.keys());
+        
+        String from = expected.firstKey();
+        List<String> scanned = new ArrayList<>();
+        for (List<String> page = index.range(from, true, "k", 700); !page.isEmpty();
+                page = index.range(from, false, "k", 700)) {
+            scanned.addAll(page);
+            from = page.get(page.size() - 1);
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), scanned);
+    }
+    
+    @Test
+    void compactsArenaAfterManyRemovals() {
+        String padding = "x".repeat(200);
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            index.put(padding + i, address(i, 1, 1));
+        }
+        long before = index.getMemoryBytes();
+        // Compaction kicks in once more than half the arena is dead
+        for (int i = 0; i < count; i++) {
+            if (i % 4 != 0) {
+                index.remove(padding + i);
+            }
+        }
+        
+        assertTrue(index.getMemoryBytes() < before, "arena was not compacted");
+        for (int i = 0; i < count; i += 4) {
+            assertEquals(layout.toPosition(i), index.get(padding + i).getBlockPosition());
+        }
+        assertEquals(count / 4, index.keys().size());
+    }
+    
+    @Test
+    void keepsMultiExtentAddresses() {
+        List<Extent> extents = Arrays.asList(
+            new Extent(layout.toPosition(10), 4),
+            new Extent(layout.toPosition(9000), 6));
+        BlockPosition start = extents.get(0).getStart();
+        index.put("split", new DataAddress(start.getX() >> 4, start.getZ() >> 4, extents, 7, true, 99, 10));
+        
+        DataAddress stored = index.get("split");
+        assertEquals(2, stored.getExtents().size());
+        assertEquals(layout.toPosition(9000), stored.getExtents().get(1).getStart());
+        assertEquals(10, stored.getBlockCount());
+        assertTrue(stored.isCompressed());
+        assertEquals(99, stored.getFingerprint());
+    }
+}
@@ -0,0 +1,113 @@
+package com.brainrot.mcdb.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyFilterTest {
+    
+    @Test
+    void neverReportsAnAddedKeyAsAbsent() {
+        KeyFilter filter = new KeyFilter(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("key:" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("key:" + i));
+        }
+    }
+    
+    @Test
+    void keepsFalsePositivesLowAtCapacity() {
+        KeyFilter filter = new KeyFilter(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("key:" + i);
+        }
+        
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("missing:" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+        assertEquals(10_000 - falsePositives, filter.getNegatives());
+    }
+    
+    @Test
+    void forgetsRemovedKeys() {
+        KeyFilter filter = new KeyFilter(1024);
+        filter.add("a");
+        filter.add("b");
+        
+        filter.remove("a");
+        assertFalse(filter.mightContain("a"));
+        assertTrue(filter.mightContain("b"));
+    }
+    
+    @Test
+    void reportsOverflowAndResizesLarger() {
+        KeyFilter filter = new KeyFilter(1024);
+        List<String> keys = new ArrayList<>();
+        boolean fits = true;
+        for (int i = 0; i < 1025; i++) {
+            keys.add("key:" + i);
+            fits = filter.add("key:" + i);
+        }
+        assertFalse(fits);
+        
+        assertTrue(filter.resize(() -> keys));
+        assertEquals(2050, filter.getCapacity());
+        for (String key : keys) {
+            assertTrue(filter.mightContain(key));
+        }
+        assertTrue(filter.add("one more"));
+    }
+    
+    @Test
+    void resizeCatchesUpWithChangesMadeWhileBuilding() {
+        KeyFilter filter = new KeyFilter(1024);
+        filter.add("kept");
+        filter.add("gone");
+        
+        // The snapshot still lists the removed key and misses the added one
+        assertTrue(filter.resize(() -> {
+            filter.add("late");
+            filter.remove("gone");
+            return List.of("kept", "gone");
+        }));
+        
+        assertTrue(filter.mightContain("kept"));
+        assertTrue(filter.mightContain("late"));
+        assertFalse(filter.mightContain("gone"));
+        assertEquals(2048, filter.getCapacity());
+    }
+    
+    @Test
+    void dropsResizeInterruptedByClear() {
+        KeyFilter filter = new KeyFilter(1024);
+        filter.add("a");
+        
+        assertFalse(filter.resize(() -> {
+            filter.clear();
+            return List.of("a");
+        }));
+        assertFalse(filter.mightContain("a"));
+        assertEquals(1024, filter.getCapacity());
+        assertTrue(filter.resize(List::of));
+    }
+    
+    @Test
+    void clearDropsEveryKey() {
+        KeyFilter filter = new KeyFilter(1024);
+        filter.add("a");
+        filter.clear();
+        assertFalse(filter.mightContain("a"));
+        assertEquals(1024, filter.getCapacity());
+    }
+}
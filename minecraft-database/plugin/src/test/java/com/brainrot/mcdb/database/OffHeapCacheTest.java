@@ -0,0 +1,130 @@
+package com.brainrot.mcdb.database;
+
+import com.brainrot.mcdb.models.DataEntry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapCacheTest {
+    
+    private static final long MB = 1024 * 1024;
+    private static final long TTL = 60_000;
+    
+    private static DataEntry entry(String key, int size, long version) {
+        byte[] value = new byte[size];
+        Arrays.fill(value, (byte) size);
+        return new DataEntry(key, value, null, version);
+    }
+    
+    @Test
+    void returnsValueAndVersion() {
+        OffHeapCache cache = new OffHeapCache(4 * MB, TTL);
+        cache.put("a", entry("a", 100, 7));
+        
+        DataEntry cached = cache.get("a");
+        assertEquals(7, cached.getVersion());
+        assertArrayEquals(entry("a", 100, 7).getValue(), cached.getValue());
+        assertNull(cache.get("b"));
+    }
+    
+    @Test
+    void streamsValuesWithoutCopyingThemOut() throws IOException {
+        OffHeapCache cache = new OffHeapCache(4 * MB, TTL);
+        cache.put("big", entry("big", 20_000, 3));
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(3, cache.read("big", out));
+        assertArrayEquals(entry("big", 20_000, 3).getValue(), out.toByteArray());
+        
+        ByteArrayOutputStream missed = new ByteArrayOutputStream();
+        assertEquals(-1, cache.read("missing", missed));
+        assertEquals(0, missed.size());
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+    
+    @Test
+    void reusesLeastRecentlyUsedSlotOfAFullClass() {
+        // One slab of 512-byte slots holds 2048 entries
+        OffHeapCache cache = new OffHeapCache(MB, TTL);
+        for (int i = 0; i < 2048; i++) {
+            cache.put("k" + i, entry("k" + i, 500, 1));
+        }
+        cache.get("k0");
+        
+        cache.put("extra", entry("extra", 500, 1));
+        assertNotNull(cache.get("k0"));
+        assertNull(cache.get("k1"));
+        assertNotNull(cache.get("extra"));
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+    
+    @Test
+    void reassignsASlabToAClassWithout() {
+        // Only one slab; the first class to ask takes it
+        OffHeapCache cache = new OffHeapCache(MB, TTL);
+        cache.put("small", entry("small", 50, 1));
+        
+        cache.put("large", entry("large", 5000, 2));
+        assertNotNull(cache.get("large"));
+        assertNull(cache.get("small"));
+        assertEquals(1, cache.getSlabReassignments());
+        assertEquals(MB, cache.getReservedBytes());
+        
+        // And back again
+        cache.put("small", entry("small", 50, 3));
+        assertEquals(3, cache.get("small").getVersion());
+        assertNull(cache.get("large"));
+        assertEquals(1, cache.size());
+    }
+    
+    @Test
+    void takesTheSlabFromTheClassHoldingMost() {
+        OffHeapCache cache = new OffHeapCache(3 * MB, TTL);
+        // Two slabs of 64-byte slots, one of 128-byte slots
+        for (int i = 0; i < 16384 + 1; i++) {
+            cache.put("s" + i, entry("s" + i, 60, 1));
+        }
+        cache.put("m", entry("m", 100, 1));
+        
+        cache.put("large", entry("large", 5000, 1));
+        assertNotNull(cache.get("large"));
+        assertNotNull(cache.get("m"));
+        // The slab holding the oldest small entries went
+        assertNull(cache.get("s0"));
+        assertNotNull(cache.get("s16384"));
+    }
+    
+    @Test
+    void skipsValuesLargerThanASlab() {
+        OffHeapCache cache = new OffHeapCache(4 * MB, TTL);
+        cache.put("huge", entry("huge", (int) MB + 1, 1));
+        assertNull(cache.get("huge"));
+        assertEquals(0, cache.getReservedBytes());
+    }
+    
+    @Test
+    void invalidatesAndExpires() throws InterruptedException {
+        OffHeapCache cache = new OffHeapCache(MB, TTL);
+        cache.put("a", entry("a", 10, 1));
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        
+        OffHeapCache shortLived = new OffHeapCache(MB, 1);
+        shortLived.put("b", entry("b", 10, 1));
+        assertTrue(shortLived.isExpiringSoon("b", 1000));
+        Thread.sleep(10);
+        assertNull(shortLived.get("b"));
+        assertFalse(shortLived.isExpiringSoon("b", 1000));
+        assertEquals(1, shortLived.getStats().getExpirations());
+    }
+}
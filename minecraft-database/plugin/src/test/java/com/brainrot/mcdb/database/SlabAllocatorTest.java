@@ -0,0 +1,120 @@
+package com.brainrot.mcdb.database;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlabAllocatorTest {
+    
+    private static final int SECTION = 4096;
+    
+    private AreaLayout layout;
+    private SpaceAllocator space;
+    private SlabAllocator slabs;
+    
+    @BeforeEach
+    void setUp() {
+        layout = new AreaLayout(0, 0, 1, 1, 0, 47);
+        space = new SpaceAllocator(layout);
+        slabs = new SlabAllocator(space, layout);
+    }
+    
+    @Test
+    void handsOutSlotsFromTheBottomOfASlab() {
+        assertEquals(0, slabs.allocate(10));
+        assertEquals(16, slabs.allocate(16));
+        assertEquals(32, slabs.allocate(1));
+        
+        assertEquals(1, slabs.getSlabCount());
+        assertEquals(16, slabs.getSlotSize(16));
+        assertEquals(0, slabs.getSlotSize(17));
+        assertTrue(slabs.isSlab(17));
+        assertEquals(SECTION, space.getUsedRuns().get(0)[1]);
+    }
+    
+    @Test
+    void reusesReleasedSlots() {
+        slabs.allocate(10);
+        long slot = slabs.allocate(10);
+        
+        assertTrue(slabs.release(slot, 10));
+        assertEquals(slot, slabs.allocate(12));
+    }
+    
+    @Test
+    void keepsSlotWhenOnlyTheTailIsReleased() {
+        long slot = slabs.allocate(10);
+        
+        assertTrue(slabs.release(slot + 5, 5));
+        assertEquals(slot + 16, slabs.allocate(10));
+    }
+    
+    @Test
+    void separatesSizeClasses() {
+        long small = slabs.allocate(10);
+        long large = slabs.allocate(100);
+        
+        assertEquals(SECTION, large);
+        assertEquals(16, slabs.getSlotSize(small));
+        assertEquals(128, slabs.getSlotSize(large));
+        assertEquals(2, slabs.getSlabCount());
+    }
+    
+    @Test
+    void carvesAnotherSlabWhenFull() {
+        assertEquals(0, slabs.allocate(2048));
+        assertEquals(2048, slabs.allocate(2000));
+        assertEquals(SECTION, slabs.allocate(1500));
+        assertEquals(2, slabs.getSlabCount());
+    }
+    
+    @Test
+    void rejectsEntriesOutsideTheSlotRange() {
+        assertEquals(-1, slabs.allocate(0));
+        assertEquals(-1, slabs.allocate(slabs.getMaxSlotSize() + 1));
+        assertEquals(0, slabs.getSlabCount());
+    }
+    
+    @Test
+    void leavesNonSlabRangesToTheSpaceAllocator() {
+        long offset = space.allocate(100);
+        
+        assertFalse(slabs.isSlab(offset));
+        assertFalse(slabs.release(offset, 100));
+    }
+    
+    @Test
+    void failsWhenNoSectionIsFree() {
+        space.allocate(layout.getTotalBlocks());
+        assertEquals(-1, slabs.allocate(10));
+    }
+    
+    @Test
+    void respectsColumnFilter() {
+        long slot = slabs.allocate(10, column -> column == 1);
+        assertEquals(1, layout.getColumnIndex(slot));
+        assertEquals(-1, slabs.allocate(10, column -> column > 3));
+    }
+    
+    @Test
+    void adaptsClassesAndReturnsEmptyRetiredSlabs() {
+        long slot = slabs.allocate(100);
+        assertEquals(128, slabs.getSlotSize(slot));
+        
+        // Fill the sample with the same size; no column is allowed so nothing is placed
+        for (int i = 1; i < 2048; i++) {
+            slabs.allocate(100, column -> false);
+        }
+        assertArrayEquals(new int[] {112, slabs.getMaxSlotSize()}, slabs.getClassSizes());
+        
+        // The 128 class is retired, so its slab goes back once empty
+        assertTrue(slabs.release(slot, 100));
+        assertFalse(slabs.isSlab(slot));
+        assertEquals(0, slabs.getSlabCount());
+        assertEquals(layout.getTotalBlocks(), space.getFreeBlocks());
+    }
+}
@@ -0,0 +1,141 @@
+package com.brainrot.mcdb.database;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceAllocatorTest {
+    
+    private static final int SECTION = 4096;
+    
+    // Two by two chunks, three full sections per column
+    private AreaLayout layout;
+    private SpaceAllocator allocator;
+    
+    @BeforeEach
+    void setUp() {
+        layout = new AreaLayout(0, 0, 1, 1, 0, 47);
+        allocator = new SpaceAllocator(layout);
+    }
+    
+    @Test
+    void allocatesAndReleases() {
+        assertEquals(0, allocator.allocate(100));
+        assertEquals(100, allocator.allocate(50));
+        assertEquals(layout.getTotalBlocks() - 150, allocator.getFreeBlocks());
+        assertEquals(150, allocator.getHighWaterMark());
+        
+        allocator.release(0, 150);
+        assertEquals(layout.getTotalBlocks(), allocator.getFreeBlocks());
+        assertEquals(0, allocator.getHighWaterMark());
+        assertEquals(0, allocator.allocate(0));
+    }
+    
+    @Test
+    void coalescesReleasedNeighbours() {
+        long first = allocator.allocate(1000);
+        long second = allocator.allocate(1000);
+        allocator.allocate(1000);
+        
+        allocator.release(first, 1000);
+        allocator.release(second, 1000);
+        
+        // The two freed runs merge into one that fits exactly
+        assertEquals(first, allocator.allocate(2000));
+    }
+    
+    @Test
+    void picksTheTightestSection() {
+        assertEquals(0, allocator.allocate(SECTION - 100));
+        
+        // Doesn't fit the rest of section 0, so it starts the next section rather than spanning
+        assertEquals(SECTION, allocator.allocate(200));
+        // Fits the 100 left in section 0 exactly
+        assertEquals(SECTION - 100, allocator.allocate(100));
+        assertEquals(3, allocator.getPlacementCounts()[0]);
+    }
+    
+    @Test
+    void fallsBackToColumnThenSpanningPlacement() {
+        assertEquals(0, allocator.allocate(SECTION + 1));
+        assertEquals(1, allocator.getPlacementCounts()[1]);
+        
+        // First fit across chunk columns, right after the previous entry
+        assertEquals(SECTION + 1, allocator.allocate(layout.getColumnSize() + 1));
+        assertEquals(1, allocator.getPlacementCounts()[2]);
+    }
+    
+    @Test
+    void failsWhenFull() {
+        assertEquals(0, allocator.allocate(layout.getTotalBlocks()));
+        assertEquals(-1, allocator.allocate(1));
+        
+        allocator.release(500, 10);
+        assertEquals(-1, allocator.allocate(11));
+        assertEquals(500, allocator.allocate(10));
+    }
+    
+    @Test
+    void reserveRejectsTakenOrOutOfRangeBlocks() {
+        assertTrue(allocator.reserve(10, 5));
+        assertFalse(allocator.reserve(12, 5));
+        assertFalse(allocator.reserve(layout.getTotalBlocks() - 1, 2));
+        assertTrue(allocator.reserve(15, 5));
+    }
+    
+    @Test
+    void respectsColumnFilter() {
+        long offset = allocator.allocate(100, column -> column == 2);
+        assertEquals(2, layout.getColumnIndex(offset));
+        assertEquals(-1, allocator.allocate(100, column -> column > 3));
+    }
+    
+    @Test
+    void allocateBelowPacksTowardsTheStart() {
+        allocator.allocate(100);
+        allocator.allocate(100);
+        allocator.release(0, 100);
+        
+        assertEquals(-1, allocator.allocateBelow(50, 40, null));
+        assertEquals(0, allocator.allocateBelow(50, 200, null));
+        assertEquals(50, allocator.allocateBelow(50, 200, null));
+        assertEquals(-1, allocator.allocateBelow(50, 200, null));
+    }
+    
+    @Test
+    void allocateSectionTakesOnlyWholeFreeSections() {
+        allocator.allocate(10);
+        assertEquals(SECTION, allocator.allocateSection(SECTION, null));
+        assertEquals(2 * SECTION, allocator.allocateSection(SECTION, null));
+    }
+    
+    @Test
+    void reportsUsedRunsMerged() {
+        allocator.reserve(0, 100);
+        allocator.reserve(100, 100);
+        allocator.reserve(300, 10);
+        
+        List<long[]> runs = allocator.getUsedRuns();
+        assertEquals(2, runs.size());
+        assertArrayEquals(new long[] {0, 200}, runs.get(0));
+        assertArrayEquals(new long[] {300, 10}, runs.get(1));
+    }
+    
+    @Test
+    void growAddsFreeSpaceAfterExistingBlocks() {
+        int oldTotal = layout.getTotalBlocks();
+        allocator.allocate(oldTotal);
+        
+        AreaLayout grown = layout.extend(1);
+        allocator.grow(grown);
+        
+        assertEquals(grown.getTotalBlocks() - oldTotal, allocator.getFreeBlocks());
+        assertEquals(oldTotal, allocator.allocate(100));
+    }
+}
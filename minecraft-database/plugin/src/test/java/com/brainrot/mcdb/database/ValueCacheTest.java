@@ -0,0 +1,136 @@
+package com.brainrot.mcdb.database;
+
+import com.brainrot.mcdb.models.CacheStats;
+import com.brainrot.mcdb.models.DataEntry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ValueCacheTest {
+    
+    private static final long TTL = 60_000;
+    
+    private static DataEntry entry(String key, int size) {
+        return new DataEntry(key, new byte[size], null);
+    }
+    
+    private static void putAll(ValueCache cache, String... keys) {
+        for (String key : keys) {
+            cache.put(key, entry(key, 10));
+        }
+    }
+    
+    @Test
+    void evictsOldestProbationEntryFirst() {
+        ValueCache cache = new ValueCache(3, Long.MAX_VALUE, TTL);
+        putAll(cache, "a", "b", "c", "d");
+        
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+    
+    @Test
+    void evictsProbationBeforeProtected() {
+        ValueCache cache = new ValueCache(3, Long.MAX_VALUE, TTL);
+        putAll(cache, "a", "b", "c");
+        cache.get("a");
+        
+        // a was hit, so the oldest unhit entry goes instead
+        putAll(cache, "d");
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+    }
+    
+    @Test
+    void hotEntriesSurviveAScanOfColdKeys() {
+        ValueCache cache = new ValueCache(10, Long.MAX_VALUE, TTL);
+        putAll(cache, "hot1", "hot2");
+        cache.get("hot1");
+        cache.get("hot2");
+        
+        for (int i = 0; i < 50; i++) {
+            putAll(cache, "cold" + i);
+        }
+        
+        assertNotNull(cache.get("hot1"));
+        assertNotNull(cache.get("hot2"));
+        assertEquals(10, cache.size());
+    }
+    
+    @Test
+    void demotesColdestProtectedEntryWhenProtectedIsFull() {
+        // Protected holds 80% of 5 entries, i.e. 4
+        ValueCache cache = new ValueCache(5, Long.MAX_VALUE, TTL);
+        putAll(cache, "k0", "k1", "k2", "k3", "k4");
+        for (int i = 0; i < 5; i++) {
+            cache.get("k" + i);
+        }
+        
+        // k0 was demoted back to probation and is now the first victim
+        putAll(cache, "x");
+        assertNull(cache.get("k0"));
+        assertNotNull(cache.get("k1"));
+        assertNotNull(cache.get("x"));
+    }
+    
+    @Test
+    void boundsTotalBytes() {
+        // Each entry weighs 100 value bytes + 2 key chars + 96 overhead
+        ValueCache cache = new ValueCache(100, 500, TTL);
+        cache.put("k0", entry("k0", 100));
+        cache.put("k1", entry("k1", 100));
+        cache.put("k2", entry("k2", 100));
+        
+        assertNull(cache.get("k0"));
+        assertEquals(2, cache.size());
+        assertEquals(2 * 198, cache.getStats().getBytes());
+    }
+    
+    @Test
+    void skipsValuesLargerThanTheCache() {
+        ValueCache cache = new ValueCache(100, 500, TTL);
+        cache.put("small", entry("small", 10));
+        cache.put("big", entry("big", 10));
+        cache.put("big", entry("big", 1000));
+        
+        assertNull(cache.get("big"));
+        assertNotNull(cache.get("small"));
+    }
+    
+    @Test
+    void replacesAndInvalidates() {
+        ValueCache cache = new ValueCache(10, Long.MAX_VALUE, TTL);
+        DataEntry second = entry("a", 20);
+        cache.put("a", entry("a", 10));
+        cache.put("a", second);
+        
+        assertSame(second, cache.get("a"));
+        assertEquals(1, cache.size());
+        
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getStats().getBytes());
+    }
+    
+    @Test
+    void expiresEntriesAfterTheirTtl() throws InterruptedException {
+        ValueCache cache = new ValueCache(10, Long.MAX_VALUE, TTL);
+        cache.put("short", entry("short", 10), 1);
+        cache.put("long", entry("long", 10));
+        Thread.sleep(10);
+        
+        assertNull(cache.get("short"));
+        assertNotNull(cache.get("long"));
+        
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.getExpirations());
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+    }
+}